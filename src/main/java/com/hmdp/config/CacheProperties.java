@@ -0,0 +1,330 @@
+package com.hmdp.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 缓存相关配置 hmdp.cache.*
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "hmdp.cache")
+public class CacheProperties {
+
+    /**
+     * 写缓存使用的编码：binary（紧凑二进制，不支持的类型自动退回JSON）或 json
+     */
+    private String codec = "binary";
+
+    /**
+     * 大value压缩
+     */
+    private Compression compression = new Compression();
+
+    /**
+     * 缓存预热
+     */
+    private WarmUp warmUp = new WarmUp();
+
+    /**
+     * 热点key探测
+     */
+    private HotKey hotKey = new HotKey();
+
+    /**
+     * 本地一级缓存（JVM进程内）
+     */
+    private Local local = new Local();
+
+    /**
+     * 布隆过滤器，防止缓存穿透
+     */
+    private Bloom bloom = new Bloom();
+
+    /**
+     * 缓存失效发件箱
+     */
+    private Outbox outbox = new Outbox();
+
+    /**
+     * 缓存重建线程池
+     */
+    private Rebuild rebuild = new Rebuild();
+
+    /**
+     * 异步查询时回源数据库的线程池
+     */
+    private AsyncLoad asyncLoad = new AsyncLoad();
+
+    /**
+     * Redis熔断器
+     */
+    private Breaker breaker = new Breaker();
+
+    /**
+     * 回源数据库的并发限制
+     */
+    private Bulkhead bulkhead = new Bulkhead();
+
+    /**
+     * 本地缓存快照
+     */
+    private Snapshot snapshot = new Snapshot();
+
+    /**
+     * 默认的过期时间策略
+     */
+    private Expiry expiry = new Expiry();
+
+    /**
+     * 按key前缀覆盖的过期时间策略，例如 "[cache:shop:]"
+     */
+    private Map<String, Expiry> expiryPrefixes = new LinkedHashMap<>();
+
+    /**
+     * 逻辑过期的概率提前刷新系数（XFetch的beta），0表示关闭
+     */
+    private double xfetchBeta = 1.0;
+
+    @Data
+    public static class Local {
+        /**
+         * 是否开启本地缓存
+         */
+        private boolean enabled = true;
+        /**
+         * 最大缓存条数，超出后按LRU淘汰
+         */
+        private int capacity = 10000;
+        /**
+         * 本地缓存有效期（秒），兜底其它节点失效广播丢失的情况
+         */
+        private long ttlSeconds = 60;
+        /**
+         * 过期副本的保留时间（秒），只在Redis熔断时使用
+         */
+        private long staleTtlSeconds = 600;
+    }
+
+    @Data
+    public static class Bloom {
+        /**
+         * 预计元素数量
+         */
+        private long expectedInsertions = 1000000;
+        /**
+         * 期望误判率
+         */
+        private double fpp = 0.01;
+        /**
+         * 从Redis位图重新加载本地镜像的间隔（秒），补齐错过的添加广播
+         */
+        private long resyncSeconds = 60;
+        /**
+         * 位图初始化的有效期（小时），过期后由一个节点用数据库中的全部id重新写入一遍
+         */
+        private long reseedHours = 24;
+        /**
+         * 初始化中的标记的有效期（秒），初始化的节点宕机后由其它节点接手
+         */
+        private long seedTimeoutSeconds = 600;
+    }
+
+    @Data
+    public static class Compression {
+        private boolean enabled = true;
+        /**
+         * 编码后超过该字节数才压缩
+         */
+        private int thresholdBytes = 1024;
+    }
+
+    @Data
+    public static class WarmUp {
+        /**
+         * 启动时是否自动预热
+         */
+        private boolean onBoot = true;
+        /**
+         * 每页读取的店铺数量
+         */
+        private int pageSize = 500;
+        /**
+         * 写Redis的线程数
+         */
+        private int threads = 4;
+    }
+
+    @Data
+    public static class HotKey {
+        private boolean enabled = true;
+        /**
+         * 一个衰减周期内访问次数超过该值视为热点
+         */
+        private int threshold = 1000;
+        /**
+         * 衰减周期（秒），每个周期计数减半
+         */
+        private long decaySeconds = 10;
+        /**
+         * 热点key在本地缓存中的有效期（秒）
+         */
+        private long ttlSeconds = 5;
+        /**
+         * 最多同时保留的热点key数量
+         */
+        private int maxHotKeys = 100;
+        /**
+         * Count-Min Sketch的行数和列数
+         */
+        private int depth = 4;
+        private int width = 16384;
+    }
+
+    @Data
+    public static class Outbox {
+        /**
+         * 轮询间隔（毫秒），事务提交后会主动唤醒，轮询只是兜底
+         */
+        private long pollIntervalMillis = 1000;
+        /**
+         * 每批处理的消息数
+         */
+        private int batchSize = 100;
+        /**
+         * 最大重试次数
+         */
+        private int maxRetries = 10;
+        /**
+         * 第二次删除的延迟（毫秒），应大于一次读库回填缓存的耗时
+         */
+        private long secondDeleteDelayMillis = 500;
+        /**
+         * 认领后多久（毫秒）还没有完成，视为处理的节点已经宕机，消息可以被其它节点重新认领
+         */
+        private long claimTimeoutMillis = 30000;
+        /**
+         * 已完成的消息保留的小时数，超过后定期删除
+         */
+        private long retentionHours = 24;
+        /**
+         * 清理已完成消息的间隔（毫秒）
+         */
+        private long purgeIntervalMillis = 3600000;
+        /**
+         * 每次删除的行数，分批删除避免长时间锁表
+         */
+        private int purgeBatchSize = 1000;
+    }
+
+    @Data
+    public static class Rebuild {
+        /**
+         * 重建线程数
+         */
+        private int threads = 10;
+        /**
+         * 排队上限，超出后丢弃新任务
+         */
+        private int queueCapacity = 1000;
+    }
+
+    @Data
+    public static class AsyncLoad {
+        /**
+         * 线程数
+         */
+        private int threads = 8;
+        /**
+         * 排队上限，超出后这一次查询失败（和舱壁已满一样），不影响同一页的其它查询
+         */
+        private int queueCapacity = 1000;
+    }
+
+    @Data
+    public static class Expiry {
+        /**
+         * 随机抖动比例，TTL在 [基础TTL, 基础TTL*(1+比例)] 之间随机延长
+         */
+        private double jitterRatio = 0.1;
+        /**
+         * 按key哈希分散的比例，同一个key的偏移固定，0表示不分散
+         */
+        private double spreadRatio = 0;
+    }
+
+    @Data
+    public static class Breaker {
+        /**
+         * 统计最近多少次调用
+         */
+        private int windowSize = 50;
+        /**
+         * 至少调用多少次才计算失败率
+         */
+        private int minimumCalls = 20;
+        /**
+         * 失败率阈值（百分比）
+         */
+        private int failureRateThreshold = 50;
+        /**
+         * 超过该耗时（毫秒）的调用按失败统计
+         */
+        private long slowCallMillis = 200;
+        /**
+         * 熔断持续时间（毫秒），之后进入半开状态
+         */
+        private long openMillis = 5000;
+        /**
+         * 半开状态放行的试探调用数
+         */
+        private int halfOpenCalls = 5;
+    }
+
+    @Data
+    public static class Bulkhead {
+        /**
+         * 同时回源数据库的最大并发数
+         */
+        private int maxConcurrent = 20;
+        /**
+         * 等待名额的最长时间（毫秒）
+         */
+        private long maxWaitMillis = 100;
+    }
+
+    @Data
+    public static class Snapshot {
+        /**
+         * 是否定期保存本地缓存快照，并在启动时加载
+         */
+        private boolean enabled = false;
+        /**
+         * 快照文件路径
+         */
+        private String path = "data/local-cache.snapshot";
+        /**
+         * 保存间隔（秒），关闭时也会保存一次
+         */
+        private long intervalSeconds = 30;
+        /**
+         * 快照的最长有效时间（秒），超过后启动时不再加载
+         */
+        private long maxAgeSeconds = 300;
+        /**
+         * 快照文件的最大字节数，超过后不再写入更多条目
+         */
+        private int maxBytes = 64 * 1024 * 1024;
+        /**
+         * 需要保存的key前缀
+         */
+        private List<String> prefixes = new ArrayList<>(Arrays.asList("cache:shop:", "cache:type:", "login:token:"));
+    }
+}
@@ -0,0 +1,29 @@
+package com.hmdp.config;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.concurrent.ThreadPoolExecutor;
+
+@Configuration
+public class ExecutorConfig {
+
+    /**
+     * 异步查询缓存未命中时查询数据库的线程池，不能在Redis的IO线程上查库
+     * 由Spring管理生命周期，关闭时等待已提交的查询完成；队列满时拒绝，由CacheClient按舱壁已满处理
+     */
+    @Bean
+    public ThreadPoolTaskExecutor cacheLoadExecutor(CacheProperties cacheProperties) {
+        CacheProperties.AsyncLoad config = cacheProperties.getAsyncLoad();
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(config.getThreads());
+        executor.setMaxPoolSize(config.getThreads());
+        executor.setQueueCapacity(config.getQueueCapacity());
+        executor.setThreadNamePrefix("cache-load-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(10);
+        return executor;
+    }
+}
@@ -1,6 +1,9 @@
 package com.hmdp.config;
 
+import com.hmdp.utils.HotKeyDetector;
+import com.hmdp.utils.LocalCache;
 import com.hmdp.utils.LoginInterceptor;
+import com.hmdp.utils.RedisCircuitBreaker;
 import com.hmdp.utils.RefreshTokenInterceptor;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.data.redis.core.StringRedisTemplate;
@@ -18,6 +21,15 @@ public class MvcConfig implements WebMvcConfigurer {
     @Resource
     private StringRedisTemplate stringRedisTemplate;
 
+    @Resource
+    private RedisCircuitBreaker redisCircuitBreaker;
+
+    @Resource
+    private LocalCache localCache;
+
+    @Resource
+    private HotKeyDetector hotKeyDetector;
+
     @Override
     public void addInterceptors(InterceptorRegistry registry) {
         // 登录拦截器
@@ -33,6 +45,6 @@ public class MvcConfig implements WebMvcConfigurer {
                         "/user/login"
                 ).order(1);
         //token刷新的拦截器 刷新拦截所有请求
-        registry.addInterceptor(new RefreshTokenInterceptor(stringRedisTemplate)).addPathPatterns("/**").order(0);
+        registry.addInterceptor(new RefreshTokenInterceptor(stringRedisTemplate, redisCircuitBreaker, localCache, hotKeyDetector)).addPathPatterns("/**").order(0);
     }
 }
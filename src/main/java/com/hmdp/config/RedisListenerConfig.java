@@ -0,0 +1,63 @@
+package com.hmdp.config;
+
+import com.hmdp.utils.BloomFilterManager;
+import com.hmdp.utils.CacheNamespace;
+import com.hmdp.utils.LocalCache;
+import com.hmdp.utils.RebuildNotifier;
+import com.hmdp.utils.SeckillStock;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+import java.nio.charset.StandardCharsets;
+
+import static com.hmdp.utils.RedisConstants.BLOOM_ADD_TOPIC;
+import static com.hmdp.utils.RedisConstants.CACHE_GEN_TOPIC;
+import static com.hmdp.utils.RedisConstants.CACHE_INVALIDATE_TOPIC;
+import static com.hmdp.utils.RedisConstants.CACHE_REBUILT_TOPIC;
+import static com.hmdp.utils.RedisConstants.SECKILL_RESTOCK_TOPIC;
+import static com.hmdp.utils.RedisConstants.SECKILL_SOLD_OUT_TOPIC;
+
+/**
+ * Redis发布订阅配置
+ */
+@Configuration
+public class RedisListenerConfig {
+
+    @Bean
+    public RedisMessageListenerContainer redisMessageListenerContainer(RedisConnectionFactory connectionFactory,
+                                                                       LocalCache localCache,
+                                                                       BloomFilterManager bloomFilterManager,
+                                                                       RebuildNotifier rebuildNotifier,
+                                                                       CacheNamespace cacheNamespace,
+                                                                       SeckillStock seckillStock) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        // 收到失效广播，删除本地缓存（消息体就是缓存key）
+        container.addMessageListener(
+                (message, pattern) -> localCache.invalidate(new String(message.getBody(), StandardCharsets.UTF_8)),
+                new ChannelTopic(CACHE_INVALIDATE_TOPIC));
+        // 其它节点向布隆过滤器添加了元素，同步本地镜像
+        container.addMessageListener(
+                (message, pattern) -> bloomFilterManager.onAdd(new String(message.getBody(), StandardCharsets.UTF_8)),
+                new ChannelTopic(BLOOM_ADD_TOPIC));
+        // 其它节点完成了缓存重建，唤醒本节点等待该key的线程
+        container.addMessageListener(
+                (message, pattern) -> rebuildNotifier.signal(new String(message.getBody(), StandardCharsets.UTF_8)),
+                new ChannelTopic(CACHE_REBUILT_TOPIC));
+        // 其它节点修改了命名空间的代数，丢弃本地缓存的代数
+        container.addMessageListener(
+                (message, pattern) -> cacheNamespace.onBump(new String(message.getBody(), StandardCharsets.UTF_8)),
+                new ChannelTopic(CACHE_GEN_TOPIC));
+        // 其它节点发现秒杀券售罄/补充了库存，同步本地售罄标记
+        container.addMessageListener(
+                (message, pattern) -> seckillStock.onSoldOut(Long.valueOf(new String(message.getBody(), StandardCharsets.UTF_8))),
+                new ChannelTopic(SECKILL_SOLD_OUT_TOPIC));
+        container.addMessageListener(
+                (message, pattern) -> seckillStock.onRestock(Long.valueOf(new String(message.getBody(), StandardCharsets.UTF_8))),
+                new ChannelTopic(SECKILL_RESTOCK_TOPIC));
+        return container;
+    }
+}
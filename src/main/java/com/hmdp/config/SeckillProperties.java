@@ -0,0 +1,77 @@
+package com.hmdp.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * 秒杀相关配置 hmdp.seckill.*
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "hmdp.seckill")
+public class SeckillProperties {
+
+    /**
+     * 订单消息消费者
+     */
+    private Consumer consumer = new Consumer();
+
+    /**
+     * 新建秒杀券时库存拆分的桶数，1表示不拆分（单个key）
+     */
+    private int stockBuckets = 1;
+
+    /**
+     * 本地售罄标记的有效期（毫秒），过期后重新到Redis确认一次，防止错过补充库存的广播
+     */
+    private long soldOutTtlMillis = 5000;
+
+    @Data
+    public static class Consumer {
+        /**
+         * 消费者组，启动时不存在则自动创建
+         */
+        private String group = "g1";
+        /**
+         * 本节点的消费线程数，每个线程是一个独立的消费者
+         */
+        private int threads = 1;
+        /**
+         * 节点名，消费者名 = 节点名-线程序号；为空时使用 主机名-进程号，保证各节点不重名
+         */
+        private String nodeName;
+        /**
+         * 每次XREADGROUP最多读取的消息数，同一批订单在一个事务中批量写入；1表示逐条处理
+         */
+        private int batchSize = 100;
+        /**
+         * 没有消息时阻塞等待的时间（毫秒）
+         */
+        private long blockMillis = 2000;
+        /**
+         * 检查其它消费者pending消息的间隔（毫秒）
+         */
+        private long reclaimIntervalMillis = 30000;
+        /**
+         * pending消息空闲超过这个时间（毫秒）才会被接管，要明显大于正常处理一批的耗时
+         */
+        private long reclaimIdleMillis = 60000;
+        /**
+         * 每次最多检查的pending消息数
+         */
+        private int reclaimBatchSize = 100;
+        /**
+         * 消息最多投递次数（包括被接管），超过后转入死信队列 stream.orders.dlq 并ACK，不再重试
+         */
+        private int maxDeliveries = 10;
+        /**
+         * 下单失败的消息留在pending-list，间隔多久（毫秒）重新处理一次
+         */
+        private long pendingRetryMillis = 5000;
+        /**
+         * 检查新登记的分桶订单队列的间隔（毫秒），新券的订单最多延迟这么久开始消费
+         */
+        private long streamRefreshMillis = 5000;
+    }
+}
@@ -0,0 +1,102 @@
+package com.hmdp.controller;
+
+
+import com.hmdp.dto.Result;
+import com.hmdp.utils.CacheClient;
+import com.hmdp.utils.CacheSerializer;
+import com.hmdp.utils.CacheWarmer;
+import com.hmdp.utils.HotKeyDetector;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import javax.annotation.Resource;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import static com.hmdp.utils.RedisConstants.*;
+
+/**
+ * <p>
+ * 缓存管理接口
+ * </p>
+ */
+@RestController
+@RequestMapping("/admin/cache")
+public class CacheAdminController {
+
+    /**
+     * 允许整批失效的命名空间（key前缀）
+     */
+    private static final Set<String> NAMESPACES = new HashSet<>(Arrays.asList(
+            CACHE_SHOP_KEY, CACHE_SHOP_HASH_KEY, CACHE_TYPE_KEY, CACHE_BLOG_KEY, CACHE_USER_KEY,
+            CACHE_USER_INFO_KEY, CACHE_SHOP_VOUCHER_KEY, CACHE_SECKILL_VOUCHER_KEY, FEED_KEY));
+
+    @Resource
+    private CacheClient cacheClient;
+
+    @Resource
+    private CacheSerializer cacheSerializer;
+
+    @Resource
+    private CacheWarmer cacheWarmer;
+
+    @Resource
+    private HotKeyDetector hotKeyDetector;
+
+    /**
+     * 查询缓存压缩统计：压缩率、平均压缩/解压耗时
+     * @return 压缩统计
+     */
+    @GetMapping("/compression")
+    public Result compressionStats() {
+        return Result.ok(cacheSerializer.getCompressionStats().snapshot());
+    }
+
+    /**
+     * 手动触发缓存预热（店铺、店铺坐标、店铺类型）
+     * @return 预热进度
+     */
+    @PostMapping("/warm-up")
+    public Result warmUp() {
+        if (!cacheWarmer.start()) {
+            return Result.fail("缓存预热正在进行中");
+        }
+        return Result.ok(cacheWarmer.getProgress());
+    }
+
+    /**
+     * 查询缓存预热进度和吞吐量
+     * @return 预热进度
+     */
+    @GetMapping("/warm-up")
+    public Result warmUpProgress() {
+        return Result.ok(cacheWarmer.getProgress());
+    }
+
+    /**
+     * 查询当前自动探测到的热点key
+     * @return 热点key及访问频率
+     */
+    @GetMapping("/hot-keys")
+    public Result hotKeys() {
+        return Result.ok(hotKeyDetector.hotKeys());
+    }
+
+    /**
+     * 整批失效一个命名空间（代数+1），例如修改店铺类型后失效 cache:type:，或清空所有收件箱 feed:
+     * 需要登录，/admin/** 不在登录拦截器的排除列表中
+     * @param prefix 命名空间，即key前缀
+     * @return 新的代数
+     */
+    @PostMapping("/namespace")
+    public Result evictNamespace(@RequestParam("prefix") String prefix) {
+        if (!NAMESPACES.contains(prefix)) {
+            return Result.fail("不支持的命名空间：" + prefix);
+        }
+        return Result.ok(cacheClient.evictNamespace(prefix));
+    }
+}
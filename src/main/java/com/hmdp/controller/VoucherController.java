@@ -45,6 +45,16 @@ public class VoucherController {
         return Result.ok(voucher.getId());
     }
 
+    /**
+     * 补充秒杀券库存
+     * @param id 优惠券id
+     * @param amount 补充的数量
+     */
+    @PostMapping("seckill/{id}/stock")
+    public Result replenishSeckillVoucher(@PathVariable("id") Long id, @RequestParam("amount") Integer amount) {
+        return voucherService.replenishSeckillVoucher(id, amount);
+    }
+
     /**
      * 查询店铺的优惠券列表
      * @param shopId 店铺id
@@ -0,0 +1,96 @@
+package com.hmdp.entity;
+
+import com.baomidou.mybatisplus.annotation.IdType;
+import com.baomidou.mybatisplus.annotation.TableId;
+import com.baomidou.mybatisplus.annotation.TableName;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.experimental.Accessors;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+
+/**
+ * <p>
+ * 缓存失效发件箱，和业务数据在同一个事务中写入
+ * </p>
+ */
+@Data
+@EqualsAndHashCode(callSuper = false)
+@Accessors(chain = true)
+@TableName("tb_cache_outbox")
+public class CacheOutbox implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * 动作：删除缓存，payload不为空时是新的版本号
+     */
+    public static final int ACTION_DELETE = 1;
+
+    /**
+     * 动作：更新hash缓存中的部分字段，payload为JSON：{"version": 新版本号, "fields": 字段}
+     */
+    public static final int ACTION_PATCH = 2;
+
+    /**
+     * 状态：0：待处理；1：已完成；2：重试次数用尽；3：已被某个中继认领，正在处理
+     */
+    public static final int STATUS_PENDING = 0;
+    public static final int STATUS_DONE = 1;
+    public static final int STATUS_FAILED = 2;
+    public static final int STATUS_PROCESSING = 3;
+
+    /**
+     * 主键
+     */
+    @TableId(value = "id", type = IdType.AUTO)
+    private Long id;
+
+    /**
+     * 要处理的缓存key
+     */
+    private String cacheKey;
+
+    /**
+     * 动作
+     */
+    private Integer action;
+
+    /**
+     * 附加数据
+     */
+    private String payload;
+
+    /**
+     * 状态
+     */
+    private Integer status;
+
+    /**
+     * 已重试次数
+     */
+    private Integer retryCount;
+
+    /**
+     * 下次可以处理的时间；处理中的消息是认领的过期时间
+     */
+    private LocalDateTime nextRetryTime;
+
+    /**
+     * 认领这条消息的中继批次
+     */
+    private String claimToken;
+
+    /**
+     * 创建时间
+     */
+    private LocalDateTime createTime;
+
+    /**
+     * 更新时间
+     */
+    private LocalDateTime updateTime;
+
+
+}
@@ -93,6 +93,11 @@ public class Shop implements Serializable {
      */
     private String openHours;
 
+    /**
+     * 版本号，每次更新+1，作为缓存的版本号
+     */
+    private Long version;
+
     /**
      * 创建时间
      */
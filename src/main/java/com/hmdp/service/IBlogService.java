@@ -16,6 +16,11 @@ public interface IBlogService extends IService<Blog> {
 
     Result queryBlogById(Long id);
 
+    /**
+     * 按id查询blog本身（带缓存），不包含作者和点赞信息
+     */
+    Blog queryBlog(Long id);
+
     Result queryHotBlog(Integer current);
 
     Result likeBlog(Long id);
@@ -0,0 +1,58 @@
+package com.hmdp.service;
+
+import com.baomidou.mybatisplus.extension.service.IService;
+import com.hmdp.entity.CacheOutbox;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p>
+ * 缓存失效发件箱 服务类
+ * </p>
+ */
+public interface ICacheOutboxService extends IService<CacheOutbox> {
+
+    /**
+     * 在当前事务中记录一条删除缓存的消息，事务提交后由中继异步处理
+     */
+    void enqueueDelete(String cacheKey);
+
+    /**
+     * 同上，删除时留下新版本号的标记，旧版本的数据不能再写入缓存
+     */
+    void enqueueDelete(String cacheKey, Long version);
+
+    /**
+     * 在当前事务中记录一条更新hash缓存字段的消息
+     * @param version 更新后的版本号，比缓存中旧的更新会被丢弃，可以为空
+     */
+    void enqueuePatch(String cacheKey, Map<String, String> fields, Long version);
+
+    /**
+     * 认领到期的待处理消息，认领后其它中继不会再处理，超过leaseMillis没有完成时可以被重新认领
+     * 同一个key还有更早的未完成消息时（其它中继正在处理或等待重试），这条消息不认领，等前面的完成
+     * @return 认领到的消息，按id排序
+     */
+    List<CacheOutbox> claimPending(int limit, long leaseMillis);
+
+    void markDone(List<Long> ids);
+
+    /**
+     * 处理失败，按指数退避安排下次重试，超过最大次数后不再处理
+     * 同时保存消息的动作和附加数据，重试时可以执行和原来不同的动作（例如改为删除）
+     */
+    void markRetry(CacheOutbox outbox, int maxRetries);
+
+    /**
+     * 放弃已认领但还不能处理的消息，delayMillis后重新认领
+     */
+    void release(List<CacheOutbox> outboxes, long delayMillis);
+
+    /**
+     * 删除完成时间早于before的已完成消息，最多limit行
+     * @return 删除的行数
+     */
+    int purgeDone(LocalDateTime before, int limit);
+}
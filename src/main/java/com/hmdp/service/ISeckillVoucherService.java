@@ -13,4 +13,8 @@ import com.hmdp.entity.SeckillVoucher;
  */
 public interface ISeckillVoucherService extends IService<SeckillVoucher> {
 
+    /**
+     * 查询秒杀券信息（带缓存），用于检查秒杀时间，其中的库存不是实时的
+     */
+    SeckillVoucher querySeckillVoucher(Long voucherId);
 }
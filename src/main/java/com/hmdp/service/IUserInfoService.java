@@ -13,4 +13,9 @@ import com.hmdp.entity.UserInfo;
  */
 public interface IUserInfoService extends IService<UserInfo> {
 
+    /**
+     * 查询用户详情（带缓存），不包含创建和更新时间
+     */
+    UserInfo queryUserInfo(Long userId);
+
 }
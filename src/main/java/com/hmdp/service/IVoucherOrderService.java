@@ -4,11 +4,16 @@ import com.baomidou.mybatisplus.extension.service.IService;
 import com.hmdp.dto.Result;
 import com.hmdp.entity.VoucherOrder;
 
+import java.util.List;
+
 
 
 public interface IVoucherOrderService extends IService<VoucherOrder> {
 
     Result seckillVoucher(Long voucherId);
 
-    void createVoucherOrder(VoucherOrder voucherOrder);
+    /**
+     * 批量下单，一个事务内完成去重、扣减库存和批量插入
+     */
+    void createVoucherOrders(List<VoucherOrder> voucherOrders);
 }
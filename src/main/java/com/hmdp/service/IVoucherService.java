@@ -4,6 +4,8 @@ import com.baomidou.mybatisplus.extension.service.IService;
 import com.hmdp.dto.Result;
 import com.hmdp.entity.Voucher;
 
+import java.util.List;
+
 /**
  * <p>
  *  服务类
@@ -16,8 +18,18 @@ public interface IVoucherService extends IService<Voucher> {
 
     Result queryVoucherOfShop(Long shopId);
 
+    /**
+     * 查询店铺的优惠券（带缓存）
+     */
+    List<Voucher> listVoucherOfShop(Long shopId);
+
     void addSeckillVoucher(Voucher voucher);
 
+    /**
+     * 补充秒杀券库存（数据库和Redis），并清除各节点的售罄标记
+     */
+    Result replenishSeckillVoucher(Long voucherId, Integer amount);
+
 
 
 }
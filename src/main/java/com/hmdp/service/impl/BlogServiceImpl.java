@@ -15,8 +15,16 @@ import com.hmdp.mapper.BlogMapper;
 import com.hmdp.service.IBlogService;
 import com.hmdp.service.IFollowService;
 import com.hmdp.service.IUserService;
+import com.hmdp.utils.AsyncRedisClient;
+import com.hmdp.utils.CacheClient;
+import com.hmdp.utils.Cached;
+import com.hmdp.utils.HotKeyDetector;
+import com.hmdp.utils.LocalCache;
+import com.hmdp.utils.RedisCircuitBreaker;
 import com.hmdp.utils.SystemConstants;
 import com.hmdp.utils.UserHolder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.aop.framework.AopContext;
 import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.data.redis.core.ZSetOperations;
 import org.springframework.stereotype.Service;
@@ -27,10 +35,11 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
-import static com.hmdp.utils.RedisConstants.BLOG_LIKED_KEY;
-import static com.hmdp.utils.RedisConstants.FEED_KEY;
+import static com.hmdp.utils.RedisConstants.*;
 
 /**
  * <p>
@@ -40,6 +49,7 @@ import static com.hmdp.utils.RedisConstants.FEED_KEY;
  * @author 虎哥
  * @since 2021-12-22
  */
+@Slf4j
 @Service
 public class BlogServiceImpl extends ServiceImpl<BlogMapper, Blog> implements IBlogService {
 
@@ -52,50 +62,56 @@ public class BlogServiceImpl extends ServiceImpl<BlogMapper, Blog> implements IB
     @Resource
     private IFollowService followService;
 
+    @Resource
+    private CacheClient cacheClient;
+
+    @Resource
+    private AsyncRedisClient asyncRedisClient;
+
+    @Resource
+    private RedisCircuitBreaker redisCircuitBreaker;
+
+    @Resource
+    private HotKeyDetector hotKeyDetector;
+
+    @Resource
+    private LocalCache localCache;
+
     //根据id查询
     @Override
     public Result queryBlogById(Long id) {
-        //1 查询blog
-        Blog blog = getById(id);
-        if (blog == null){
+        //1 查询blog，通过代理对象调用，缓存注解才会生效
+        Blog cached = ((IBlogService) AopContext.currentProxy()).queryBlog(id);
+        if (cached == null){
             return Result.fail("笔记不存在");
         }
-        //2 笔记存在，则查询blog有关的用户
-        queryBlogUser(blog);
-        //3 查询blog是否被点赞
-        isBlogLiked(blog);
+        //缓存的对象被多个请求共享，复制一份再填充用户信息
+        Blog blog = BeanUtil.copyProperties(cached, Blog.class);
+        //2 笔记存在，则查询blog有关的用户，以及blog是否被点赞
+        fillBlogs(Collections.singletonList(blog));
         return Result.ok(blog);
     }
 
-    private void isBlogLiked(Blog blog) {
-        UserDTO user = UserHolder.getUser();
-        if (user == null){
-            //用户未登录 无需查询是否点赞
-            return;
-        }
-        //1.获取登录用户
-        Long userId = user.getId();
-        //2.Redis中判断当前用户是否已经点赞过
-        String key = "blog:liked:" + blog.getId();
-        Double score = stringRedisTemplate.opsForZSet().score(key, userId.toString());
-        blog.setIsLike(score != null);
-    }
 
+    @Override
+    @Cached(prefix = CACHE_BLOG_KEY, key = "#id", ttl = 30)
+    public Blog queryBlog(Long id) {
+        return getById(id);
+    }
 
     //分页查询
     @Override
     public Result queryHotBlog(Integer current) {
-        // 根据用户查询
+        // 根据点赞数分页查询，只查id
         Page<Blog> page = query()
+                .select("id")
                 .orderByDesc("liked")
                 .page(new Page<>(current, SystemConstants.MAX_PAGE_SIZE));
-        // 获取当前页数据
-        List<Blog> records = page.getRecords();
-        // 查询用户
-        records.forEach(blog ->{
-            queryBlogUser(blog);
-            isBlogLiked(blog);//查是否被点赞
-        });
+        // 获取当前页数据，按id批量查缓存
+        List<Long> ids = page.getRecords().stream().map(Blog::getId).collect(Collectors.toList());
+        List<Blog> records = queryBlogsByIds(ids);
+        // 查询用户和是否被点赞
+        fillBlogs(records);
         return Result.ok(records);
     }
 
@@ -105,6 +121,7 @@ public class BlogServiceImpl extends ServiceImpl<BlogMapper, Blog> implements IB
         Long userId = UserHolder.getUser().getId();
         //2.Redis中判断当前用户是否已经点赞过
         String key = BLOG_LIKED_KEY + id;
+        localCache.invalidate(likedLocalKey(id, userId));
         Double score = stringRedisTemplate.opsForZSet().score(key, userId.toString());
         if (score == null){
             //3.如果未点赞，可以点赞
@@ -113,6 +130,8 @@ public class BlogServiceImpl extends ServiceImpl<BlogMapper, Blog> implements IB
             //3.2 保存用户到Redis的Zset集合 zadd key value score
             if (isSuccess){
                 stringRedisTemplate.opsForZSet().add(key,userId.toString(),System.currentTimeMillis());
+                //点赞数变化，删除blog缓存
+                cacheClient.evict(cacheClient.buildKey(CACHE_BLOG_KEY, id));
             }
         }else {
             //4.如果已点赞，此次操作为为取消点赞
@@ -121,6 +140,7 @@ public class BlogServiceImpl extends ServiceImpl<BlogMapper, Blog> implements IB
             //4.2 把用户从Redis的set集合移除
             if (isSuccess){
                 stringRedisTemplate.opsForZSet().remove(key,userId.toString());
+                cacheClient.evict(cacheClient.buildKey(CACHE_BLOG_KEY, id));
             }
         }
 
@@ -175,8 +195,8 @@ public class BlogServiceImpl extends ServiceImpl<BlogMapper, Blog> implements IB
             //4.1 获取粉丝id
             Long userId = follow.getUserId();
 
-            //4.2 推送到粉丝的收件箱 按照时间排序
-            String key = FEED_KEY + userId;
+            //4.2 推送到粉丝的收件箱 按照时间排序，收件箱key带命名空间代数，可以整批清空
+            String key = cacheClient.buildKey(FEED_KEY, userId);
             stringRedisTemplate.opsForZSet().add(key,blog.getId().toString(),System.currentTimeMillis());
         }
 
@@ -190,7 +210,7 @@ public class BlogServiceImpl extends ServiceImpl<BlogMapper, Blog> implements IB
         Long userId = UserHolder.getUser().getId();
 
         //2.查询收件箱 ZREVRANGEBYSCORE key Max Min Limit offset count
-        String key = FEED_KEY + userId;
+        String key = cacheClient.buildKey(FEED_KEY, userId);
         Set<ZSetOperations.TypedTuple<String>> typedTuples = stringRedisTemplate.opsForZSet()
                 .reverseRangeByScoreWithScores(key, 0, max, offset, 2);
 
@@ -220,16 +240,11 @@ public class BlogServiceImpl extends ServiceImpl<BlogMapper, Blog> implements IB
 
         }
 
-        //4.根据id查询blog
-        String idStr = StrUtil.join(",",ids);
-        List<Blog> blogs = query().in("id",ids).last("ORDER BY FIELD(id," + idStr + ")").list();
+        //4.根据id批量查询blog（先查缓存）
+        List<Blog> blogs = queryBlogsByIds(ids);
 
-        for (Blog blog : blogs) {
-            // 查询blog有关的用户
-            queryBlogUser(blog);
-            // 查询blog是否被点赞
-            isBlogLiked(blog);
-        }
+        // 查询blog有关的用户，以及blog是否被点赞
+        fillBlogs(blogs);
 
         //5.封装并返回
         ScrollResult r = new ScrollResult();
@@ -239,10 +254,75 @@ public class BlogServiceImpl extends ServiceImpl<BlogMapper, Blog> implements IB
         return Result.ok(r);
     }
 
-    private void queryBlogUser(Blog blog) {
-        Long userId = blog.getUserId();
-        User user = userService.getById(userId);
-        blog.setName(user.getNickName());
-        blog.setIcon(user.getIcon());
+    //按id顺序批量查询blog，先查缓存，未命中的一次性查库
+    private List<Blog> queryBlogsByIds(List<Long> ids) {
+        return cacheClient.queryBatchWithPassThrough(
+                CACHE_BLOG_KEY, ids, Blog.class, this::listByIds, Blog::getId, CACHE_BLOG_TTL, TimeUnit.MINUTES);
+    }
+
+    /**
+     * 并行查询每篇blog的作者（先查缓存）和当前用户是否点赞，全部发出后统一等待，
+     * 整页只需要大约一次Redis往返的延迟
+     */
+    private void fillBlogs(List<Blog> blogs) {
+        UserDTO user = UserHolder.getUser();
+        List<CompletableFuture<Void>> futures = new ArrayList<>(blogs.size() * 2);
+        for (Blog blog : blogs) {
+            futures.add(queryBlogUserAsync(blog));
+            if (user != null) {
+                //用户未登录 无需查询是否点赞
+                futures.add(isBlogLikedAsync(blog, user.getId()));
+            }
+        }
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+    }
+
+    private CompletableFuture<Void> queryBlogUserAsync(Blog blog) {
+        return cacheClient.queryWithPassThroughAsync(CACHE_USER_KEY, blog.getUserId(), UserDTO.class,
+                        id -> {
+                            User user = userService.getById(id);
+                            return user == null ? null : BeanUtil.copyProperties(user, UserDTO.class);
+                        },
+                        CACHE_USER_TTL, TimeUnit.MINUTES)
+                .handle((user, e) -> {
+                    if (e != null) {
+                        //数据库繁忙时只是这篇blog不显示作者，不影响整页
+                        log.warn("查询blog作者失败, blogId={}", blog.getId(), e);
+                    } else if (user != null) {
+                        blog.setName(user.getNickName());
+                        blog.setIcon(user.getIcon());
+                    }
+                    return null;
+                });
+    }
+
+    private CompletableFuture<Void> isBlogLikedAsync(Blog blog, Long userId) {
+        //Redis中判断当前用户是否已经点赞过，Redis不可用时按未点赞显示
+        String key = BLOG_LIKED_KEY + blog.getId();
+        //热门笔记的点赞集合每次浏览都会读取，成为热点后短时间内使用本地缓存的点赞状态
+        boolean hot = hotKeyDetector.record(key);
+        String localKey = likedLocalKey(blog.getId(), userId);
+        if (hot) {
+            Object liked = localCache.get(localKey);
+            if (liked instanceof Boolean) {
+                blog.setIsLike((Boolean) liked);
+                return CompletableFuture.completedFuture(null);
+            }
+        }
+        return redisCircuitBreaker.callAsync(() -> asyncRedisClient.zScore(key, userId.toString()))
+                .handle((score, e) -> {
+                    blog.setIsLike(e == null && score != null);
+                    if (hot && e == null) {
+                        localCache.putHot(localKey, score != null);
+                    }
+                    return null;
+                });
+    }
+
+    /**
+     * 本地缓存的点赞状态，点赞或取消点赞时删除本节点的副本，其它节点最多延迟热点有效期
+     */
+    private static String likedLocalKey(Long blogId, Long userId) {
+        return BLOG_LIKED_KEY + blogId + ":" + userId;
     }
 }
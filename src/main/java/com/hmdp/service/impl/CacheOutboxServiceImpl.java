@@ -0,0 +1,181 @@
+package com.hmdp.service.impl;
+
+import cn.hutool.core.lang.UUID;
+import cn.hutool.json.JSONObject;
+import cn.hutool.json.JSONUtil;
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import com.hmdp.entity.CacheOutbox;
+import com.hmdp.mapper.CacheOutboxMapper;
+import com.hmdp.service.ICacheOutboxService;
+import com.hmdp.utils.CacheOutboxRelay;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.Resource;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * <p>
+ * 缓存失效发件箱 服务实现类
+ * </p>
+ */
+@Service
+public class CacheOutboxServiceImpl extends ServiceImpl<CacheOutboxMapper, CacheOutbox> implements ICacheOutboxService {
+
+    /**
+     * 重试退避的上限（秒）
+     */
+    private static final long MAX_BACKOFF_SECONDS = 300;
+
+    /**
+     * 同一个key前面还有未完成的消息时，多久（毫秒）后再认领
+     */
+    private static final long BLOCKED_DELAY_MILLIS = 1000;
+
+    @Resource
+    private CacheOutboxRelay cacheOutboxRelay;
+
+    @Override
+    public void enqueueDelete(String cacheKey) {
+        enqueue(cacheKey, CacheOutbox.ACTION_DELETE, null);
+    }
+
+    @Override
+    public void enqueueDelete(String cacheKey, Long version) {
+        enqueue(cacheKey, CacheOutbox.ACTION_DELETE, version == null ? null : version.toString());
+    }
+
+    @Override
+    public void enqueuePatch(String cacheKey, Map<String, String> fields, Long version) {
+        JSONObject payload = JSONUtil.createObj().set("version", version).set("fields", fields);
+        enqueue(cacheKey, CacheOutbox.ACTION_PATCH, payload.toString());
+    }
+
+    private void enqueue(String cacheKey, int action, String payload) {
+        // 1.和业务数据在同一个事务中写入发件箱
+        LocalDateTime now = LocalDateTime.now();
+        CacheOutbox outbox = new CacheOutbox()
+                .setCacheKey(cacheKey)
+                .setAction(action)
+                .setPayload(payload)
+                .setStatus(CacheOutbox.STATUS_PENDING)
+                .setRetryCount(0)
+                .setNextRetryTime(now)
+                .setCreateTime(now)
+                .setUpdateTime(now);
+        save(outbox);
+        // 2.事务提交后立即唤醒中继，不在写请求中同步访问redis
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCommit() {
+                    cacheOutboxRelay.trigger();
+                }
+            });
+        } else {
+            cacheOutboxRelay.trigger();
+        }
+    }
+
+    @Override
+    public List<CacheOutbox> claimPending(int limit, long leaseMillis) {
+        // 1.认领到期的待处理消息，以及认领已过期（处理的节点宕机）的消息，按id顺序，行锁保证每条只被一个中继认领
+        String token = UUID.randomUUID().toString(true);
+        LocalDateTime now = LocalDateTime.now();
+        boolean claimed = update().set("status", CacheOutbox.STATUS_PROCESSING)
+                .set("claim_token", token)
+                .set("next_retry_time", now.plus(leaseMillis, ChronoUnit.MILLIS))
+                .set("update_time", now)
+                .in("status", CacheOutbox.STATUS_PENDING, CacheOutbox.STATUS_PROCESSING)
+                .le("next_retry_time", now)
+                .last("ORDER BY id LIMIT " + limit)
+                .update();
+        if (!claimed) {
+            return Collections.emptyList();
+        }
+        List<CacheOutbox> batch = query().eq("claim_token", token).orderByAsc("id").list();
+        if (batch.isEmpty()) {
+            return batch;
+        }
+        // 2.查询同一个key上更早的、不是这一批认领的未完成消息
+        Set<String> keys = batch.stream().map(CacheOutbox::getCacheKey).collect(Collectors.toSet());
+        Map<String, Long> earliest = new HashMap<>();
+        query().select("id", "cache_key", "claim_token")
+                .in("cache_key", keys)
+                .in("status", CacheOutbox.STATUS_PENDING, CacheOutbox.STATUS_PROCESSING)
+                .lt("id", batch.get(batch.size() - 1).getId())
+                .list()
+                .stream()
+                .filter(o -> !token.equals(o.getClaimToken()))
+                .forEach(o -> earliest.merge(o.getCacheKey(), o.getId(), Math::min));
+        // 3.前面还有未完成的消息时先放回，等前面的完成后再处理，同一个key的消息不会乱序
+        List<CacheOutbox> ready = new ArrayList<>(batch.size());
+        List<CacheOutbox> blocked = new ArrayList<>();
+        for (CacheOutbox outbox : batch) {
+            Long first = earliest.get(outbox.getCacheKey());
+            if (first != null && first < outbox.getId()) {
+                blocked.add(outbox);
+            } else {
+                ready.add(outbox);
+            }
+        }
+        release(blocked, BLOCKED_DELAY_MILLIS);
+        return ready;
+    }
+
+    @Override
+    public void markDone(List<Long> ids) {
+        update().set("status", CacheOutbox.STATUS_DONE)
+                .set("update_time", LocalDateTime.now())
+                .in("id", ids)
+                .update();
+    }
+
+    @Override
+    public void markRetry(CacheOutbox outbox, int maxRetries) {
+        int retryCount = outbox.getRetryCount() + 1;
+        long backoff = Math.min(1L << Math.min(retryCount, 20), MAX_BACKOFF_SECONDS);
+        LocalDateTime now = LocalDateTime.now();
+        update().set("retry_count", retryCount)
+                .set("action", outbox.getAction())
+                .set("payload", outbox.getPayload())
+                .set("status", retryCount >= maxRetries ? CacheOutbox.STATUS_FAILED : CacheOutbox.STATUS_PENDING)
+                .set("claim_token", null)
+                .set("next_retry_time", now.plusSeconds(backoff))
+                .set("update_time", now)
+                .eq("id", outbox.getId())
+                .update();
+    }
+
+    @Override
+    public void release(List<CacheOutbox> outboxes, long delayMillis) {
+        if (outboxes.isEmpty()) {
+            return;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        update().set("status", CacheOutbox.STATUS_PENDING)
+                .set("claim_token", null)
+                .set("next_retry_time", now.plus(delayMillis, ChronoUnit.MILLIS))
+                .set("update_time", now)
+                .in("id", outboxes.stream().map(CacheOutbox::getId).collect(Collectors.toList()))
+                .update();
+    }
+
+    @Override
+    public int purgeDone(LocalDateTime before, int limit) {
+        return baseMapper.delete(new QueryWrapper<CacheOutbox>()
+                .eq("status", CacheOutbox.STATUS_DONE)
+                .lt("update_time", before)
+                .last("LIMIT " + limit));
+    }
+}
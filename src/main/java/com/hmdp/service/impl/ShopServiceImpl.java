@@ -1,21 +1,18 @@
 package com.hmdp.service.impl;
 
-import cn.hutool.core.util.BooleanUtil;
-import cn.hutool.core.util.StrUtil;
-import cn.hutool.json.JSONObject;
-import cn.hutool.json.JSONUtil;
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.baomidou.mybatisplus.core.conditions.update.UpdateWrapper;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
-import com.fasterxml.jackson.databind.util.JSONPObject;
 import com.hmdp.dto.Result;
 import com.hmdp.entity.Shop;
 import com.hmdp.mapper.ShopMapper;
+import com.hmdp.service.ICacheOutboxService;
 import com.hmdp.service.IShopService;
+import com.hmdp.utils.BloomFilterManager;
 import com.hmdp.utils.CacheClient;
-import com.hmdp.utils.RedisConstants;
-import com.hmdp.utils.RedisData;
+import com.hmdp.utils.HashCacheClient;
 import com.hmdp.utils.SystemConstants;
-import io.lettuce.core.api.async.RedisGeoAsyncCommands;
 import org.springframework.data.geo.Distance;
 import org.springframework.data.geo.GeoResult;
 import org.springframework.data.geo.GeoResults;
@@ -25,11 +22,10 @@ import org.springframework.data.redis.domain.geo.GeoReference;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import javax.annotation.PostConstruct;
 import javax.annotation.Resource;
 import java.time.LocalDateTime;
 import java.util.*;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 
 import static com.hmdp.utils.RedisConstants.*;
@@ -51,12 +47,32 @@ public class ShopServiceImpl extends ServiceImpl<ShopMapper, Shop> implements IS
     @Resource
     private CacheClient cacheClient;
 
+    @Resource
+    private BloomFilterManager bloomFilterManager;
+
+    @Resource
+    private ICacheOutboxService cacheOutboxService;
+
+    @Resource
+    private HashCacheClient hashCacheClient;
+
+    /**
+     * 店铺列表只需要的字段
+     */
+    private static final List<String> SHOP_LIST_FIELDS = Arrays.asList("id", "name", "images", "avgPrice", "score");
+
+    @PostConstruct //注册店铺的布隆过滤器，位图不存在或已经过期时才用tb_shop的所有id初始化
+    private void initShopBloomFilter() {
+        bloomFilterManager.register(CACHE_SHOP_KEY, () -> listObjs(new QueryWrapper<Shop>().select("id"), String::valueOf));
+    }
+
     @Override
     public Result queryById(Long id) {
         //解决缓存穿透
         //Shop shop = queryWithPassThrough(id);
-        //使用缓存工具类来实现
-        Shop shop = cacheClient.queryWithPassThrough(CACHE_SHOP_KEY, id, Shop.class, this::getById, CACHE_SHOP_TTL, TimeUnit.MINUTES);
+        //使用缓存工具类来实现，带版本号写入，避免重建时把旧数据写回缓存
+        Shop shop = cacheClient.queryWithPassThrough(CACHE_SHOP_KEY, id, Shop.class, this::getById,
+                Shop::getVersion, CACHE_SHOP_TTL, TimeUnit.MINUTES);
 
         //互斥锁解决缓存击穿
         //Shop shop = queryWithMutex(id);
@@ -70,56 +86,9 @@ public class ShopServiceImpl extends ServiceImpl<ShopMapper, Shop> implements IS
         return Result.ok(shop);
     }
 
-    //用于缓存重建的线程池
-    private static final ExecutorService CACHE_REBUILD_EXECUTOR = Executors.newFixedThreadPool(10);
-
-    //逻辑过期解决缓存击穿
+    //逻辑过期解决缓存击穿，缓存格式由CacheClient统一编解码
     public Shop queryWithLogicalExpire(Long id) {
-        String key = CACHE_SHOP_KEY + id;
-        //1.从redis查询商铺缓存
-        String shopJson = stringRedisTemplate.opsForValue().get(key);
-        //2.判断是否存在
-        if (StrUtil.isBlank(shopJson)) {
-            //3.为空，直接返回
-            return null;
-        }
-        //4.命中 需要先把json反序列化为对象
-        RedisData redisData = JSONUtil.toBean(shopJson, RedisData.class);
-        JSONObject data = (JSONObject) redisData.getData();
-        Shop shop = JSONUtil.toBean(data, Shop.class);
-        LocalDateTime expireTime = redisData.getExpireTime();
-        //5.判断是否过期
-        if (expireTime.isAfter(LocalDateTime.now())){
-            //5.1 未过期，直接返回店铺信息
-            return shop;
-        }
-
-
-        //5.2 已过期，需要缓存重建
-
-        //6 重建缓存
-        //6.1 获取互斥锁
-        String lockKey = LOCK_SHOP_KEY + id;
-        boolean isLock = tryLock(lockKey);
-        //6.2 判断是否获取锁成功
-        if (isLock){
-            //6.3 成功，开启线程独立（再开启一个线程），实现缓存重建
-            CACHE_REBUILD_EXECUTOR.submit(()->{
-                try {
-                    //创建缓存
-                    this.saveShop2Redis(id,20L);
-                } catch (Exception e) {
-                    throw new RuntimeException(e);
-                }finally {
-                    //释放锁
-                    unlock(lockKey);
-                }
-            });
-        }
-
-        //6.4 返回过期的店铺信息
-
-        return shop;
+        return cacheClient.queryWithLogicalExpire(CACHE_SHOP_KEY, id, Shop.class, this::getById, 20L, TimeUnit.SECONDS);
     }
 
     //解决缓存穿透问题
@@ -162,91 +131,33 @@ public class ShopServiceImpl extends ServiceImpl<ShopMapper, Shop> implements IS
 //            return shop;
 //    }
 
-    
-    public Shop queryWithMutex(Long id) {
-        String key = CACHE_SHOP_KEY + id;
-        //1.从redis查询商铺缓存
-        String shopJson = stringRedisTemplate.opsForValue().get(key);
-        //2.判断是否存在
-        if (StrUtil.isNotBlank(shopJson)) {
-            //3.存在，直接返回
-            //JSONUtil.toBean --> Json转对象
-            Shop shop = JSONUtil.toBean(shopJson, Shop.class);
-            return shop;
-        }
-        // 判断命中的是否是空值  （击穿问题）
-        if (shopJson != null) {
-            //返回错误信息
-            return null;
-        }
-
-        //*实现缓存重建
-        String lockKey = "locak:shop:" + id;
-        Shop shop = null;
-        try {
-            //  *1.获取互斥锁
-            boolean isLock = tryLock(lockKey);
-            //  *2.判断是否获取成功
-            if (!isLock){
-                //*3.如果失败，则休眠并且重试
-                Thread.sleep(50);
-                return queryWithMutex(id);
-            }
-
-            //  *4.如果成功，写入redis
-            //4. 不存在 根据id查询数据库
-            shop = getById(id);
-
-            //模拟重建的延迟
-            Thread.sleep(200);
-
-
-            //4. case1 数据库中不存在，返回错误
-            if (shop == null) {
-                //将空值写入redis （击穿问题）
-                //这里设置为“”之后 再去看 shopJson != null 的判断 能直接返回错误信息 从而不需要再去查数据库
-                stringRedisTemplate.opsForValue().set(key, "", CACHE_NULL_TTL, TimeUnit.MINUTES);
-                //返回错误信息
-                return null;
-
-            }
-
-            //4. case2 数据库中存在，写入redis
-            // JSONUtil.toJsonStr 对象 --> Json
-            stringRedisTemplate.opsForValue().set(key, JSONUtil.toJsonStr(shop), CACHE_SHOP_TTL, TimeUnit.MINUTES);
-        }catch (InterruptedException e){
-            throw new RuntimeException(e);
-        } finally {
-            //  *5.释放互斥锁
-            unlock(lockKey);
-        }
-
-        //5.返回
-        return shop;
-    }
-
 
-    private boolean tryLock(String key){
-        //类似redis中的setnx lock 1
-        Boolean flag = stringRedisTemplate.opsForValue().setIfAbsent(key, "1", 10, TimeUnit.SECONDS);
-        return BooleanUtil.isTrue(flag);
+    //互斥锁解决缓存击穿，并发请求的合并和锁等待由CacheClient处理
+    public Shop queryWithMutex(Long id) {
+        return cacheClient.queryWithMutex(CACHE_SHOP_KEY, id, Shop.class, this::getById, CACHE_SHOP_TTL, TimeUnit.MINUTES);
     }
 
-    private void unlock(String key){
-        stringRedisTemplate.delete(key);
-    }
 
-    //解决缓存击穿的第二种方法 逻辑过期时间
+    //解决缓存击穿的第二种方法 逻辑过期时间（批量预热见CacheWarmer）
     public void saveShop2Redis(Long id,Long expireSeconds) throws InterruptedException {
-        //1.查询店铺数据
+        //1.查询店铺数据，记录重建耗时
+        long begin = System.currentTimeMillis();
         Shop shop = getById(id);
-        Thread.sleep(200);
-        //2.封装逻辑过期时间
-        RedisData redisData = new RedisData();
-        redisData.setData(shop);
-        redisData.setExpireTime(LocalDateTime.now().plusSeconds(expireSeconds));
-        //3.写入Redis
-        stringRedisTemplate.opsForValue().set(CACHE_SHOP_KEY + id,JSONUtil.toJsonStr(redisData));
+        long delta = System.currentTimeMillis() - begin;
+        //2.封装逻辑过期时间并写入Redis
+        cacheClient.setWithLogicalExpire(cacheClient.buildKey(CACHE_SHOP_KEY, id), shop, expireSeconds, TimeUnit.SECONDS, delta);
+    }
+
+    @Override
+    public Result saveShop(Shop shop) {
+        //1.写入数据库
+        save(shop);
+        //2.加入布隆过滤器（广播其它节点）
+        bloomFilterManager.add(CACHE_SHOP_KEY, shop.getId());
+        //3.清理可能存在的空值缓存
+        cacheClient.evict(cacheClient.buildKey(CACHE_SHOP_KEY, shop.getId()));
+        cacheClient.evict(cacheClient.buildKey(CACHE_SHOP_HASH_KEY, shop.getId()));
+        return Result.ok(shop.getId());
     }
 
     @Override
@@ -257,10 +168,23 @@ public class ShopServiceImpl extends ServiceImpl<ShopMapper, Shop> implements IS
             return Result.fail("店铺id不能为空");
         }
         //注意顺序 先更新（写）数据库 后删除缓存
-        //1.更新数据库
-        updateById(shop);
-        //2.删除缓存
-        stringRedisTemplate.delete(CACHE_SHOP_KEY+ id);
+        //1.更新数据库，版本号+1（不使用前端传入的版本号）
+        shop.setVersion(null);
+        shop.setUpdateTime(LocalDateTime.now());
+        boolean updated = update(shop, new UpdateWrapper<Shop>().setSql("version = version + 1").eq("id", id));
+        if (!updated) {
+            return Result.fail("店铺不存在");
+        }
+        //1.1 读取本事务更新后的版本号
+        Long version = query().select("version").eq("id", id).one().getVersion();
+        shop.setVersion(version);
+        //2.同一事务写入发件箱，提交后异步删除缓存，并留下新版本号的标记
+        cacheOutboxService.enqueueDelete(cacheClient.buildKey(CACHE_SHOP_KEY, id), version);
+        //3.hash缓存只更新本次修改的字段
+        Map<String, String> fields = HashCacheClient.toFields(shop);
+        fields.remove("id");
+        fields.remove("distance");
+        cacheOutboxService.enqueuePatch(cacheClient.buildKey(CACHE_SHOP_HASH_KEY, id), fields, version);
         return Result.ok();
     }
 
@@ -319,10 +243,10 @@ public class ShopServiceImpl extends ServiceImpl<ShopMapper, Shop> implements IS
             distanceMap.put(shopIdStr, distance);
 
         });
-        //5.根据id查询Shop
-        String idStr = StrUtil.join(",", ids);
-        //强制按 Redis 返回的 ID 顺序排序（保证与距离排序一致，近的在前）
-        List<Shop> shops = query().in("id", ids).last("ORDER BY FIELD(id," + idStr + ")").list();
+        //5.根据id批量查询Shop，列表只需要部分字段，从hash缓存中HMGET投影读取，未命中的一次性查库
+        //结果按 Redis 返回的 ID 顺序排列（保证与距离排序一致，近的在前）
+        List<Shop> shops = hashCacheClient.multiGetFields(CACHE_SHOP_HASH_KEY, ids, Shop.class, SHOP_LIST_FIELDS,
+                this::listByIds, Shop::getId, Shop::getVersion, CACHE_SHOP_TTL, TimeUnit.MINUTES);
         for (Shop shop : shops) {
             shop.setDistance(distanceMap.get(shop.getId().toString()).getValue());
         }
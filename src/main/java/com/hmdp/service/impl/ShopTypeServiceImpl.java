@@ -1,19 +1,17 @@
 package com.hmdp.service.impl;
 
-import cn.hutool.core.util.StrUtil;
-import cn.hutool.json.JSONUtil;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
 import com.hmdp.dto.Result;
 import com.hmdp.entity.ShopType;
 import com.hmdp.mapper.ShopTypeMapper;
 import com.hmdp.service.IShopTypeService;
-import org.springframework.data.redis.core.StringRedisTemplate;
+import com.hmdp.utils.Cached;
+import org.springframework.aop.framework.AopContext;
 import org.springframework.stereotype.Service;
 
-import javax.annotation.Resource;
-
 import java.util.List;
 
+import static com.hmdp.utils.RedisConstants.CACHE_TYPE_KEY;
 import static com.hmdp.utils.RedisConstants.CACHE_TYPE_LIST;
 
 /**
@@ -27,27 +25,17 @@ import static com.hmdp.utils.RedisConstants.CACHE_TYPE_LIST;
 @Service
 public class ShopTypeServiceImpl extends ServiceImpl<ShopTypeMapper, ShopType> implements IShopTypeService {
 
-    @Resource
-    private StringRedisTemplate stringRedisTemplate;
     @Override
     public Result queryList() {
-        String key = CACHE_TYPE_LIST;
-
-        //从redis中查询类型缓存
-        String typeJson = stringRedisTemplate.opsForValue().get(key);
-
-        //如果缓存不为空，直接返回
-        if (StrUtil.isNotBlank(typeJson)) {
-            List<ShopType> shopTypeList = JSONUtil.toList(typeJson, ShopType.class);
-            return Result.ok(shopTypeList);
-        }
-
-        //为空，查询
-        List<ShopType> shopTypeList = query().orderByAsc("sort").list();
-
-        //将数据库信息保存到缓存
-        stringRedisTemplate.opsForValue().set(key,JSONUtil.toJsonStr(shopTypeList));
-        return Result.ok(shopTypeList);
+        //通过代理对象调用，缓存注解才会生效
+        IShopTypeService proxy = (IShopTypeService) AopContext.currentProxy();
+        return Result.ok(proxy.queryTypeList());
+    }
 
+    @Override
+    @Cached(prefix = CACHE_TYPE_KEY, key = "'" + CACHE_TYPE_LIST + "'", ttl = -1, elementType = ShopType.class)
+    public List<ShopType> queryTypeList() {
+        //缓存未命中时查询数据库，结果不过期，和预热写入的是同一个key
+        return query().orderByAsc("sort").list();
     }
 }
@@ -1,36 +1,60 @@
 package com.hmdp.service.impl;
 
 import cn.hutool.core.bean.BeanUtil;
+import cn.hutool.core.util.StrUtil;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import com.hmdp.config.SeckillProperties;
 import com.hmdp.dto.Result;
 import com.hmdp.dto.UserDTO;
+import com.hmdp.entity.SeckillVoucher;
 import com.hmdp.entity.VoucherOrder;
 import com.hmdp.mapper.VoucherOrderMapper;
 import com.hmdp.service.ISeckillVoucherService;
 import com.hmdp.service.IVoucherOrderService;
 import com.hmdp.utils.RedisIdWorker;
+import com.hmdp.utils.SeckillStock;
 import com.hmdp.utils.UserHolder;
+import io.lettuce.core.cluster.SlotHash;
 import lombok.extern.slf4j.Slf4j;
-import org.redisson.api.RLock;
-import org.redisson.api.RedissonClient;
-import org.springframework.aop.framework.AopContext;
-import org.springframework.core.io.ClassPathResource;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.data.domain.Range;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.connection.RedisStreamCommands;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
 import org.springframework.data.redis.connection.stream.*;
+import org.springframework.data.redis.core.RedisCallback;
 import org.springframework.data.redis.core.StringRedisTemplate;
-import org.springframework.data.redis.core.script.DefaultRedisScript;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import javax.annotation.Resource;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
 import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static com.hmdp.utils.RedisConstants.SECKILL_ORDER_DEAD_LETTER_STREAM;
+import static com.hmdp.utils.RedisConstants.SECKILL_ORDER_STREAM;
+import static com.hmdp.utils.RedisConstants.SECKILL_ORDER_STREAMS_KEY;
 
 @Slf4j
 @Service
@@ -45,53 +69,277 @@ public class VoucherOrderServiceImpl extends ServiceImpl<VoucherOrderMapper, Vou
     StringRedisTemplate stringRedisTemplate;
 
     @Resource
-    private RedissonClient redissonClient;
+    private SeckillProperties seckillProperties;
+
+    @Resource
+    private SeckillStock seckillStock;
 
+    //消费线程中拿不到AopContext，直接注入代理对象
+    @Lazy
+    @Resource
     private IVoucherOrderService proxy;
 
     //private BlockingQueue<VoucherOrder> orderTasks = new ArrayBlockingQueue<>(1024 * 1024);
 
-    private static final ExecutorService SECKILL_ORDER_HANDLER_EXECUTOR = Executors.newSingleThreadExecutor();
+    private ExecutorService seckillOrderHandlerExecutor;
+
+    private final ScheduledExecutorService pendingReclaimExecutor = Executors.newSingleThreadScheduledExecutor(
+            r -> new Thread(r, "voucher-order-reclaim"));
+
+    private final List<VoucherOrderHandler> handlers = new ArrayList<>();
+
+    /**
+     * 消费的订单队列：stream.orders 加上 seckill:streams 中登记的分桶队列，定期刷新
+     * 已经注销的队列（售罄或秒杀结束）在剩余消息全部处理完之后移除
+     */
+    private volatile List<String> streams = Collections.singletonList(SECKILL_ORDER_STREAM);
+
+    /**
+     * 按slot分组的订单队列，每组一条XREADGROUP读取；非集群模式只有一组
+     */
+    private volatile List<List<String>> readGroups = Collections.singletonList(streams);
 
     @PostConstruct //让当前类初始化之后 就执行这个任务（生命周期）
     private void init() {
-        SECKILL_ORDER_HANDLER_EXECUTOR.submit(new VoucherOrderHandler());
+        SeckillProperties.Consumer config = seckillProperties.getConsumer();
+        //1 自动创建消费者组（队列不存在时一起创建），再加入已经登记的分桶队列
+        createGroup(SECKILL_ORDER_STREAM, config.getGroup());
+        refreshStreams();
+        //2 每个线程一个消费者，名称 = 节点名-线程序号，节点名默认 主机名-进程号
+        String node = StrUtil.isBlank(config.getNodeName()) ? ManagementFactory.getRuntimeMXBean().getName()
+                .replaceAll("^(\\d+)@(.+)$", "$2-$1") : config.getNodeName();
+        AtomicInteger threadId = new AtomicInteger();
+        seckillOrderHandlerExecutor = Executors.newFixedThreadPool(config.getThreads(),
+                r -> new Thread(r, "voucher-order-handler-" + threadId.incrementAndGet()));
+        for (int i = 0; i < config.getThreads(); i++) {
+            VoucherOrderHandler handler = new VoucherOrderHandler(config.getGroup(), node + "-" + i);
+            handlers.add(handler);
+            seckillOrderHandlerExecutor.submit(handler);
+        }
+        //3 定期接管其它消费者（例如已经宕机的节点）长时间未确认的消息
+        long interval = config.getReclaimIntervalMillis();
+        pendingReclaimExecutor.scheduleWithFixedDelay(this::reclaimPending, interval, interval, TimeUnit.MILLISECONDS);
+        //4 定期发现新登记的分桶队列
+        long refresh = config.getStreamRefreshMillis();
+        pendingReclaimExecutor.scheduleWithFixedDelay(this::refreshStreams, refresh, refresh, TimeUnit.MILLISECONDS);
     }
 
-    private class VoucherOrderHandler implements Runnable {
-        String queueName = "stream.orders";
+    /**
+     * 读取 seckill:streams 中登记的分桶队列，为新队列创建消费者组后加入消费列表，
+     * 已经注销的队列在消费者组读完所有消息、没有pending消息后移除
+     * 消费者组从0开始，创建之前已经写入的消息也会被消费
+     */
+    private void refreshStreams() {
+        String group = seckillProperties.getConsumer().getGroup();
+        try {
+            Set<String> registered = stringRedisTemplate.opsForSet().members(SECKILL_ORDER_STREAMS_KEY);
+            if (registered == null) {
+                registered = Collections.emptySet();
+            }
+            List<String> current = streams;
+            Set<String> known = new HashSet<>(current);
+            List<String> next = new ArrayList<>(registered.size() + 1);
+            next.add(SECKILL_ORDER_STREAM);
+            //1 登记的队列，新出现的先创建消费者组
+            for (String stream : registered) {
+                if (!known.contains(stream)) {
+                    createGroup(stream, group);
+                }
+                next.add(stream);
+            }
+            //2 已经注销的队列，还没有处理完的继续读取
+            for (String stream : current) {
+                if (SECKILL_ORDER_STREAM.equals(stream) || registered.contains(stream)) {
+                    continue;
+                }
+                if (drained(stream, group)) {
+                    log.info("订单队列已经处理完，不再读取, stream={}", stream);
+                } else {
+                    next.add(stream);
+                }
+            }
+            streams = Collections.unmodifiableList(next);
+            readGroups = groupBySlot(next);
+        } catch (Exception e) {
+            log.error("刷新订单队列异常", e);
+        }
+    }
 
-        @Override
-        public void run() {
-            while (true) {
-                try {
-                    //1 获取消息队列中的订单信息  XREADGROUP GROUP g1 c1 COUNT 1 BLOCK 2000 STREAMS stream.orders >
-                    //这里MapRecord<String, Object, Object> 第一个string是消息队列的名称 第二个Object表示消息中的键（field） 第三个第二个Object表示消息中的值（value）
-                    List<MapRecord<String, Object, Object>> list = stringRedisTemplate.opsForStream().read(
-                            Consumer.from("g1", "c1"),
-                            StreamReadOptions.empty().count(1).block(Duration.ofSeconds(2)),
-                            StreamOffset.create(queueName, ReadOffset.lastConsumed())
-                    );
+    /**
+     * 消费者组已经读到队列的最后一条消息，并且没有pending消息
+     */
+    private boolean drained(String stream, String group) {
+        if (!Boolean.TRUE.equals(stringRedisTemplate.hasKey(stream))) {
+            return true;
+        }
+        String lastId = stringRedisTemplate.opsForStream().info(stream).lastGeneratedId();
+        return stringRedisTemplate.opsForStream().groups(stream).stream()
+                .filter(info -> group.equals(info.groupName()))
+                .allMatch(info -> info.pendingCount() == 0 && lastId.equals(info.lastDeliveredId()));
+    }
 
-                    //2 判断消息是否获取成功
-                    if (list == null || list.isEmpty()) {
-                        //2.1 如果获取失败，说明没有消息，继续下一次循环
-                        continue;
-                    }
+    /**
+     * 集群模式下一条XREADGROUP只能读取同一个slot的队列，按slot分组；非集群模式所有队列一次读取
+     */
+    private List<List<String>> groupBySlot(List<String> streams) {
+        RedisConnectionFactory factory = stringRedisTemplate.getConnectionFactory();
+        if (!(factory instanceof LettuceConnectionFactory) || !((LettuceConnectionFactory) factory).isClusterAware()) {
+            return Collections.singletonList(streams);
+        }
+        return new ArrayList<>(streams.stream()
+                .collect(Collectors.groupingBy(SlotHash::getSlot, LinkedHashMap::new, Collectors.toList()))
+                .values());
+    }
+
+    /**
+     * XGROUP CREATE stream g1 0 MKSTREAM，组已经存在时忽略
+     */
+    private void createGroup(String stream, String group) {
+        try {
+            stringRedisTemplate.execute((RedisCallback<String>) connection -> connection.streamCommands()
+                    .xGroupCreate(stream.getBytes(StandardCharsets.UTF_8), group, ReadOffset.from("0"), true));
+            log.info("创建消费者组, stream={}, group={}", stream, group);
+        } catch (Exception e) {
+            if (!String.valueOf(NestedExceptionUtils.getMostSpecificCause(e).getMessage()).contains("BUSYGROUP")) {
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * 接管空闲时间超过阈值的pending消息：逐个队列XPENDING找出候选，XCLAIM转给本节点的消费者（轮流分配），
+     * 再通知该消费者处理自己的pending-list。XCLAIM带最小空闲时间，原消费者刚刚处理的消息不会被抢走
+     * 接管之后，其它节点上已经没有pending消息、长时间空闲的消费者（已经宕机或重启后改名）从消费者组中删除
+     */
+    private void reclaimPending() {
+        for (String stream : streams) {
+            reclaimPending(stream);
+        }
+    }
+
+    private void reclaimPending(String stream) {
+        SeckillProperties.Consumer config = seckillProperties.getConsumer();
+        try {
+            PendingMessages pending = stringRedisTemplate.opsForStream().pending(
+                    stream, config.getGroup(), Range.unbounded(), config.getReclaimBatchSize());
+            Duration minIdle = Duration.ofMillis(config.getReclaimIdleMillis());
+            Set<String> local = handlers.stream().map(h -> h.consumer).collect(Collectors.toSet());
+            int next = 0;
+            for (PendingMessage message : pending) {
+                if (local.contains(message.getConsumerName()) || message.getElapsedTimeSinceLastDelivery().compareTo(minIdle) < 0) {
+                    continue;
+                }
+                VoucherOrderHandler handler = handlers.get(next++ % handlers.size());
+                List<RecordId> claimed = stringRedisTemplate.execute((RedisCallback<List<RecordId>>) connection ->
+                        connection.streamCommands().xClaimJustId(stream.getBytes(StandardCharsets.UTF_8),
+                                config.getGroup(), handler.consumer,
+                                RedisStreamCommands.XClaimOptions.minIdle(minIdle).ids(message.getId())));
+                if (claimed != null && !claimed.isEmpty()) {
+                    log.info("接管pending消息, stream={}, id={}, from={}, to={}",
+                            stream, message.getIdAsString(), message.getConsumerName(), handler.consumer);
+                    handler.pendingClaimed = true;
+                }
+            }
+            removeIdleConsumers(stream, local);
+        } catch (Exception e) {
+            log.error("接管pending消息异常, stream={}", stream, e);
+        }
+    }
+
+    /**
+     * XGROUP DELCONSUMER：只删除没有pending消息的消费者，不会丢消息；
+     * 正常的消费者每次阻塞读取都会刷新空闲时间，不会被删除，误删也会在下次读取时自动重建
+     */
+    private void removeIdleConsumers(String stream, Set<String> local) {
+        SeckillProperties.Consumer config = seckillProperties.getConsumer();
+        List<StreamInfo.XInfoConsumer> consumers = stringRedisTemplate.opsForStream()
+                .consumers(stream, config.getGroup()).stream().collect(Collectors.toList());
+        for (StreamInfo.XInfoConsumer info : consumers) {
+            if (local.contains(info.consumerName()) || info.pendingCount() > 0
+                    || info.idleTimeMs() < config.getReclaimIdleMillis()) {
+                continue;
+            }
+            stringRedisTemplate.opsForStream().deleteConsumer(stream, Consumer.from(config.getGroup(), info.consumerName()));
+            log.info("删除空闲的消费者, stream={}, consumer={}", stream, info.consumerName());
+        }
+    }
 
-                    // 如果获取成功，可以下单
-                    //3 解析消息中的订单信息 一般只有1个消息 所以取下标0的位置信息
-                    MapRecord<String, Object, Object> record = list.get(0);
-                    Map<Object, Object> values = record.getValue();
+    @PreDestroy
+    private void destroy() {
+        pendingReclaimExecutor.shutdownNow();
+        seckillOrderHandlerExecutor.shutdownNow();
+    }
+
+    private class VoucherOrderHandler implements Runnable {
+        final String group;
+
+        final String consumer;
 
-                    //4封装成VoucherOrder
-                    VoucherOrder voucherOrder = BeanUtil.fillBeanWithMap(values, new VoucherOrder(), true);
+        /**
+         * 接管了其它消费者的消息，需要处理自己的pending-list
+         */
+        volatile boolean pendingClaimed;
 
-                    //5 如果获取成功 可以下单
-                    handleVoucherOrder(voucherOrder);
+        /**
+         * pending-list中还有失败的消息时，下一次重新处理的时间，0表示没有
+         */
+        long retryPendingAt;
 
-                    //6 ACK确认 XACK
-                    stringRedisTemplate.opsForStream().acknowledge(queueName,"g1",record.getId());
+        VoucherOrderHandler(String group, String consumer) {
+            this.group = group;
+            this.consumer = consumer;
+        }
+
+        @Override
+        public void run() {
+            SeckillProperties.Consumer config = seckillProperties.getConsumer();
+            //启动时先处理上次（同名消费者）没有确认的消息
+            handlePendingList();
+            boolean idle = false;
+            while (!Thread.currentThread().isInterrupted()) {
+                try {
+                    if (pendingClaimed || (retryPendingAt > 0 && System.currentTimeMillis() >= retryPendingAt)) {
+                        pendingClaimed = false;
+                        handlePendingList();
+                    }
+                    //所有队列在一条XREADGROUP中读取（集群模式每个slot一条）；
+                    //上一轮都没有消息时才阻塞，集群模式每组阻塞 blockMillis/组数，一轮总共约blockMillis
+                    List<List<String>> current = readGroups;
+                    long block = idle ? Math.max(1, config.getBlockMillis() / current.size()) : 0;
+                    boolean received = false;
+                    for (List<String> streamGroup : current) {
+                        //1 批量获取消息队列中的订单信息  XREADGROUP GROUP g1 c1 COUNT n [BLOCK t] STREAMS s1 s2 ... > > ...
+                        //这里MapRecord<String, Object, Object> 第一个string是消息队列的名称 第二个Object表示消息中的键（field） 第三个第二个Object表示消息中的值（value）
+                        StreamReadOptions options = StreamReadOptions.empty().count(config.getBatchSize());
+                        @SuppressWarnings("unchecked")
+                        StreamOffset<String>[] offsets = streamGroup.stream()
+                                .map(stream -> StreamOffset.create(stream, ReadOffset.lastConsumed()))
+                                .toArray(StreamOffset[]::new);
+                        List<MapRecord<String, Object, Object>> list = stringRedisTemplate.opsForStream().read(
+                                Consumer.from(group, consumer),
+                                block > 0 ? options.block(Duration.ofMillis(block)) : options,
+                                offsets
+                        );
+
+                        //2 判断消息是否获取成功
+                        if (list == null || list.isEmpty()) {
+                            //2.1 如果获取失败，说明这些队列没有消息，读取下一组
+                            continue;
+                        }
+                        received = true;
+
+                        //3 按队列批量下单并ACK，失败的消息稍后到pending-list中重新处理
+                        Map<String, List<MapRecord<String, Object, Object>>> byStream = list.stream()
+                                .collect(Collectors.groupingBy(MapRecord::getStream, LinkedHashMap::new, Collectors.toList()));
+                        int failed = 0;
+                        for (Map.Entry<String, List<MapRecord<String, Object, Object>>> entry : byStream.entrySet()) {
+                            failed += handleRecords(entry.getKey(), entry.getValue());
+                        }
+                        if (failed > 0 && retryPendingAt == 0) {
+                            retryPendingAt = System.currentTimeMillis() + config.getPendingRetryMillis();
+                        }
+                    }
+                    idle = !received;
 
                 } catch (Exception e) {
                     log.error("处理订单异常", e);
@@ -101,46 +349,133 @@ public class VoucherOrderServiceImpl extends ServiceImpl<VoucherOrderMapper, Vou
             }
         }
 
+        /**
+         * 处理所有队列的pending-list，仍然失败的消息留在pending-list，等待一段时间后再处理一遍，不在这里原地重试
+         */
         private void handlePendingList() {
-            while (true) {
+            int failed = 0;
+            for (String stream : streams) {
+                failed += handlePendingList(stream);
+            }
+            retryPendingAt = failed > 0 ? System.currentTimeMillis() + seckillProperties.getConsumer().getPendingRetryMillis() : 0;
+        }
+
+        /**
+         * 处理一个队列的pending-list：从头向后读一遍，每批先按XPENDING的投递次数把超过上限的消息转入死信队列，其余的下单
+         * @return 失败的消息数
+         */
+        private int handlePendingList(String stream) {
+            SeckillProperties.Consumer config = seckillProperties.getConsumer();
+            String offset = "0";
+            int failed = 0;
+            while (!Thread.currentThread().isInterrupted()) {
                 try {
-                    //1 获取pendinglist中的订单信息  XREADGROUP GROUP g1 c1 COUNT 1 STREAMS stream.orders 0
-                    //这里MapRecord<String, Object, Object> 第一个string是消息队列的名称 第二个Object表示消息中的键（field） 第三个第二个Object表示消息中的值（value）
+                    //1 批量获取pendinglist中的订单信息  XREADGROUP GROUP g1 c1 COUNT n STREAMS stream offset
                     List<MapRecord<String, Object, Object>> list = stringRedisTemplate.opsForStream().read(
-                            Consumer.from("g1", "c1"),
-                            StreamReadOptions.empty().count(1),
-                            StreamOffset.create(queueName, ReadOffset.from("0"))
+                            Consumer.from(group, consumer),
+                            StreamReadOptions.empty().count(config.getBatchSize()),
+                            StreamOffset.create(stream, ReadOffset.from(offset))
                     );
 
                     //2 判断消息是否获取成功
                     if (list == null || list.isEmpty()) {
-                        //2.1 如果获取失败，说明pendinglist没有消息，结束循环
+                        //2.1 如果获取失败，说明pendinglist已经读完，结束循环
                         break;
                     }
+                    offset = list.get(list.size() - 1).getId().getValue();
 
-                    // 如果获取成功，可以下单
-                    //3 解析消息中的订单信息 一般只有1个消息 所以取下标0的位置信息
-                    MapRecord<String, Object, Object> record = list.get(0);
-                    Map<Object, Object> values = record.getValue();
-
-                    //4封装成VoucherOrder
-                    VoucherOrder voucherOrder = BeanUtil.fillBeanWithMap(values, new VoucherOrder(), true);
-
-                    //5 如果获取成功 可以下单
-                    handleVoucherOrder(voucherOrder);
-
-                    //6 ACK确认 XACK
-                    stringRedisTemplate.opsForStream().acknowledge(queueName,"g1",record.getId());
+                    //3 投递次数超过上限的消息转入死信队列，其余的批量下单并ACK
+                    failed += handleRecords(stream, deadLetter(stream, list));
 
                 } catch (Exception e) {
-                    log.error("处理pending-list订单异常", e);
+                    log.error("处理pending-list订单异常, stream={}", stream, e);
+                    failed++;
                     try {
                         Thread.sleep(20);
                     } catch (InterruptedException ex) {
-                        throw new RuntimeException(ex);
+                        Thread.currentThread().interrupt();
                     }
+                    break;
+                }
+            }
+            return failed;
+        }
+
+        /**
+         * 按XPENDING记录的投递次数，把超过上限的消息写入死信队列并ACK，返回剩下需要处理的消息
+         */
+        private List<MapRecord<String, Object, Object>> deadLetter(String stream, List<MapRecord<String, Object, Object>> records) {
+            int maxDeliveries = seckillProperties.getConsumer().getMaxDeliveries();
+            //1 查询这批消息的投递次数 XPENDING stream g1 first last n c1
+            PendingMessages pending = stringRedisTemplate.opsForStream().pending(stream,
+                    Consumer.from(group, consumer),
+                    Range.closed(records.get(0).getId().getValue(), records.get(records.size() - 1).getId().getValue()),
+                    records.size());
+            Map<RecordId, Long> deliveries = new HashMap<>(records.size());
+            for (PendingMessage message : pending) {
+                deliveries.put(message.getId(), message.getTotalDeliveryCount());
+            }
+            //2 超过上限的写入死信队列，保留原队列和消息id，写入成功后再ACK
+            List<MapRecord<String, Object, Object>> remaining = new ArrayList<>(records.size());
+            for (MapRecord<String, Object, Object> record : records) {
+                Long count = deliveries.get(record.getId());
+                if (count == null || count <= maxDeliveries) {
+                    remaining.add(record);
+                    continue;
                 }
+                Map<Object, Object> value = new LinkedHashMap<>(record.getValue());
+                value.put("source", stream);
+                value.put("sourceId", record.getId().getValue());
+                value.put("deliveries", count.toString());
+                stringRedisTemplate.opsForStream().add(StreamRecords.newRecord()
+                        .in(SECKILL_ORDER_DEAD_LETTER_STREAM).ofMap(value));
+                stringRedisTemplate.opsForStream().acknowledge(stream, group, record.getId());
+                log.error("订单消息投递{}次仍然失败，转入死信队列, stream={}, id={}, value={}",
+                        count, stream, record.getId(), record.getValue());
             }
+            return remaining;
+        }
+
+        /**
+         * 一批消息在一个事务中下单，成功后一次ACK整批
+         * 整批失败时逐条重试，找出有问题的消息，其余的照常ACK；失败的留在pending-list
+         * @return 失败的消息数
+         */
+        private int handleRecords(String stream, List<MapRecord<String, Object, Object>> records) {
+            if (records.isEmpty()) {
+                return 0;
+            }
+            //1 解析消息中的订单信息
+            List<VoucherOrder> orders = new ArrayList<>(records.size());
+            for (MapRecord<String, Object, Object> record : records) {
+                orders.add(BeanUtil.fillBeanWithMap(record.getValue(), new VoucherOrder(), true));
+            }
+            //2 批量下单
+            try {
+                proxy.createVoucherOrders(orders);
+            } catch (Exception e) {
+                if (records.size() == 1) {
+                    log.error("下单失败，消息留在pending-list, id={}", records.get(0).getId(), e);
+                    return 1;
+                }
+                log.warn("批量下单失败，改为逐条处理, size={}", records.size(), e);
+                //2.1 逐条下单，一条失败不影响后面的消息
+                int failed = 0;
+                for (int i = 0; i < records.size(); i++) {
+                    try {
+                        proxy.createVoucherOrders(Collections.singletonList(orders.get(i)));
+                        stringRedisTemplate.opsForStream().acknowledge(stream, group, records.get(i).getId());
+                    } catch (Exception ex) {
+                        log.error("下单失败，消息留在pending-list, id={}", records.get(i).getId(), ex);
+                        failed++;
+                    }
+                }
+                return failed;
+            }
+            //3 ACK确认 XACK 整批一次
+            RecordId[] ids = records.stream().map(MapRecord::getId).toArray(RecordId[]::new);
+            stringRedisTemplate.opsForStream().acknowledge(stream, group, ids);
+            return 0;
         }
     }
 //    private class VoucherOrderHandler implements Runnable{
@@ -158,62 +493,59 @@ public class VoucherOrderServiceImpl extends ServiceImpl<VoucherOrderMapper, Vou
 //        }
 //    }
 
-    private void handleVoucherOrder(VoucherOrder voucherOrder) {
-        //获取用户
-        Long userId = voucherOrder.getUserId();
-        //创建锁对象
-        RLock lock = redissonClient.getLock("lock:order:" + userId);
-
-        //获取锁
-        boolean isLock = lock.tryLock();
-
-        //判断是否锁成功
-        if (!isLock) {
-            //获取锁失败，返回错误
-            log.error("不允许重复下单");
-        }
-
-        try {
-            synchronized (userId.toString().intern()) {  //这里intern() 是因为string对象每次都是new一个 为保证都是一个string的值 所以去看string的引用（字符串常量池）
-                //子线程 不是父线程 无法通过动态代理 所以直接使用局部变量
-                proxy.createVoucherOrder(voucherOrder);
-            }
-        } finally {
-            //释放锁
-            lock.unlock();
-        }
-    }
-
-    private static final DefaultRedisScript<Long> SECKILL_SCRIPT;
-
-    static {
-        SECKILL_SCRIPT = new DefaultRedisScript<>();
-        SECKILL_SCRIPT.setLocation(new ClassPathResource("seckill.lua"));
-        SECKILL_SCRIPT.setResultType(Long.class);
-    }
-
     @Override
     public Result seckillVoucher(Long voucherId) {
         //获取用户
         UserDTO user = UserHolder.getUser();
         Long userId = user.getId();
+        //1.查询秒杀券信息（本地缓存 -> Redis -> 数据库），判断秒杀时间
+        SeckillVoucher voucher = seckillVoucherService.querySeckillVoucher(voucherId);
+        if (voucher == null) {
+            return Result.fail("秒杀券不存在");
+        }
+        LocalDateTime now = LocalDateTime.now();
+        if (voucher.getBeginTime().isAfter(now)) {
+            return Result.fail(seckillMessage(SeckillStock.NOT_STARTED));
+        }
+        if (voucher.getEndTime().isBefore(now)) {
+            return Result.fail(seckillMessage(SeckillStock.ENDED));
+        }
+        //2.本节点已经确认售罄，不再生成订单id和访问Redis
+        if (seckillStock.isSoldOut(voucherId)) {
+            return Result.fail(seckillMessage(SeckillStock.SOLD_OUT));
+        }
         //获取订单id
         long orderId = redisIdWorker.nextId("order");
-        //1.执行lua脚本
-        Long result = stringRedisTemplate.execute(
-                SECKILL_SCRIPT,
-                Collections.emptyList(),
-                voucherId.toString(), userId.toString(), String.valueOf(orderId)
-        );
-
-        //3.主线程获取代理对象 子线程直接拿
-        proxy = (IVoucherOrderService) AopContext.currentProxy();
-        //4.返回订单id
+        //3.执行lua脚本（库存可能拆分在多个桶中），脚本中再次检查秒杀时间
+        int result = seckillStock.acquire(voucherId, userId, orderId);
 
+        //4.判断结果是否为0，不为0代表没有购买资格
+        if (result != SeckillStock.OK) {
+            return Result.fail(seckillMessage(result));
+        }
+        //5.返回订单id
         return Result.ok(orderId);
 
     }
 
+    /**
+     * 秒杀脚本结果对应的提示
+     */
+    private static String seckillMessage(int result) {
+        switch (result) {
+            case SeckillStock.SOLD_OUT:
+                return "库存不足";
+            case SeckillStock.DUPLICATE:
+                return "不能重复下单";
+            case SeckillStock.NOT_STARTED:
+                return "秒杀尚未开始";
+            case SeckillStock.ENDED:
+                return "秒杀已经结束";
+            default:
+                return "下单失败";
+        }
+    }
+
 //    @Override
 //    public Result seckillVoucher(Long voucherId) {
 //        //获取用户
@@ -305,37 +637,67 @@ public class VoucherOrderServiceImpl extends ServiceImpl<VoucherOrderMapper, Vou
 //
 //    }
 
+    /**
+     * 批量下单，同一个事务：
+     * 去掉重复消息和已经存在的订单（一人一单），按优惠券分组每张券只扣减一次库存，再批量插入订单
+     */
+    @Override
     @Transactional
-    public void createVoucherOrder(VoucherOrder voucherOrder) {
-        //5.一人一单
-        Long userId = voucherOrder.getUserId();
-
-
-        //5.1 查询订单
-        Integer count = query().eq("user_id", userId).eq("voucher_id", voucherOrder.getVoucherId()).count();
-        //5.2 判断订单是否存在
-        if (count > 0) {
-            log.error("用户已经购买过一次！");
+    public void createVoucherOrders(List<VoucherOrder> voucherOrders) {
+        //1.批内去重，同一用户同一优惠券只保留第一条（消息重复投递）
+        Map<String, VoucherOrder> unique = new LinkedHashMap<>();
+        for (VoucherOrder order : voucherOrders) {
+            unique.putIfAbsent(order.getUserId() + ":" + order.getVoucherId(), order);
         }
 
-        //6.扣减库存(解决stock的并发问题)
-        boolean success = seckillVoucherService.update()
-                .setSql("stock = stock -1") //set stock = stock -1
-                //where id = ? and stock >0  乐观锁
-                .eq("voucher_id", voucherOrder.getVoucherId())
-                .gt("stock", 0)
-                .update();
-
-        //判断是否执行成功
-        if (!success) {
-            //扣减失败
-            log.error("库存不足！");
+        //2.一人一单：一次查询出已经存在的订单
+        Set<Long> userIds = new HashSet<>();
+        Set<Long> voucherIds = new HashSet<>();
+        for (VoucherOrder order : unique.values()) {
+            userIds.add(order.getUserId());
+            voucherIds.add(order.getVoucherId());
+        }
+        List<VoucherOrder> existing = query().select("user_id", "voucher_id")
+                .in("user_id", userIds).in("voucher_id", voucherIds).list();
+        for (VoucherOrder order : existing) {
+            if (unique.remove(order.getUserId() + ":" + order.getVoucherId()) != null) {
+                log.error("用户已经购买过一次！userId={}, voucherId={}", order.getUserId(), order.getVoucherId());
+            }
+        }
+        if (unique.isEmpty()) {
+            return;
         }
 
+        //3.按优惠券分组，每张券一条UPDATE扣减库存(乐观锁 stock >= n)
+        Map<Long, List<VoucherOrder>> byVoucher = unique.values().stream()
+                .collect(Collectors.groupingBy(VoucherOrder::getVoucherId, LinkedHashMap::new, Collectors.toList()));
+        List<VoucherOrder> toSave = new ArrayList<>(unique.size());
+        byVoucher.forEach((voucherId, orders) -> {
+            boolean success = seckillVoucherService.update()
+                    .setSql("stock = stock - " + orders.size())
+                    .eq("voucher_id", voucherId)
+                    .ge("stock", orders.size())
+                    .update();
+            if (success) {
+                toSave.addAll(orders);
+                return;
+            }
+            //3.1 库存不够整组扣减（Redis和数据库库存不一致），逐个扣减到库存为0
+            for (VoucherOrder order : orders) {
+                boolean ok = seckillVoucherService.update()
+                        .setSql("stock = stock -1")
+                        .eq("voucher_id", voucherId)
+                        .gt("stock", 0)
+                        .update();
+                if (!ok) {
+                    log.error("库存不足！voucherId={}, orderId={}", voucherId, order.getId());
+                    continue;
+                }
+                toSave.add(order);
+            }
+        });
 
-        //保存订单到数据库
-        save(voucherOrder);
-
-
+        //4.批量保存订单到数据库（JDBC批处理）
+        saveBatch(toSave);
     }
 }
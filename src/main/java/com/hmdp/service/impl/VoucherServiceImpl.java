@@ -7,15 +7,22 @@ import com.hmdp.entity.Voucher;
 import com.hmdp.mapper.VoucherMapper;
 import com.hmdp.service.ISeckillVoucherService;
 import com.hmdp.service.IVoucherService;
-import org.springframework.data.redis.core.StringRedisTemplate;
+import com.hmdp.utils.CacheClient;
+import com.hmdp.utils.CacheInvalidate;
+import com.hmdp.utils.Cached;
+import com.hmdp.utils.SeckillStock;
+import org.springframework.aop.framework.AopContext;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import javax.annotation.Resource;
 import java.time.LocalDateTime;
 import java.util.List;
 
-import static com.hmdp.utils.RedisConstants.SECKILL_STOCK_KEY;
+import static com.hmdp.utils.RedisConstants.CACHE_SECKILL_VOUCHER_KEY;
+import static com.hmdp.utils.RedisConstants.CACHE_SHOP_VOUCHER_KEY;
 
 /**
  * <p>
@@ -31,18 +38,29 @@ public class VoucherServiceImpl extends ServiceImpl<VoucherMapper, Voucher> impl
     @Resource
     private ISeckillVoucherService seckillVoucherService;
     @Resource
-    private StringRedisTemplate stringRedisTemplate;
+    private SeckillStock seckillStock;
+    @Resource
+    private CacheClient cacheClient;
 
     @Override
     public Result queryVoucherOfShop(Long shopId) {
-        // 查询优惠券信息
-        List<Voucher> vouchers = getBaseMapper().queryVoucherOfShop(shopId);
+        // 查询优惠券信息，通过代理对象调用，缓存注解才会生效
+        IVoucherService proxy = (IVoucherService) AopContext.currentProxy();
+        List<Voucher> vouchers = proxy.listVoucherOfShop(shopId);
         // 返回结果
         return Result.ok(vouchers);
     }
 
+    @Override
+    @Cached(prefix = CACHE_SHOP_VOUCHER_KEY, key = "#shopId", ttl = 1, elementType = Voucher.class)
+    public List<Voucher> listVoucherOfShop(Long shopId) {
+        // 结果包含秒杀库存，有效期设置得较短
+        return getBaseMapper().queryVoucherOfShop(shopId);
+    }
+
     @Override
     @Transactional
+    @CacheInvalidate(prefix = CACHE_SHOP_VOUCHER_KEY, key = "#voucher.shopId")
     public void addSeckillVoucher(Voucher voucher) {
         // 保存优惠券
         save(voucher);
@@ -53,8 +71,56 @@ public class VoucherServiceImpl extends ServiceImpl<VoucherMapper, Voucher> impl
         seckillVoucher.setBeginTime(voucher.getBeginTime());
         seckillVoucher.setEndTime(voucher.getEndTime());
         seckillVoucherService.save(seckillVoucher);
-        // 保存秒杀库存到Redis中
-        stringRedisTemplate.opsForValue().set(SECKILL_STOCK_KEY + voucher.getId(), voucher.getStock().toString());
+        afterCommit(() -> {
+            // 保存秒杀库存到Redis中（按配置拆分到多个桶）
+            seckillStock.seed(voucher.getId(), voucher.getStock(), voucher.getBeginTime(), voucher.getEndTime());
+            // 清理可能存在的秒杀券信息空值缓存
+            cacheClient.evict(cacheClient.buildKey(CACHE_SECKILL_VOUCHER_KEY, voucher.getId()));
+        });
+    }
+
+    @Override
+    @Transactional
+    public Result replenishSeckillVoucher(Long voucherId, Integer amount) {
+        if (amount == null || amount <= 0) {
+            return Result.fail("补充数量必须大于0");
+        }
+        // 1.先确认优惠券存在，再做任何修改
+        Voucher voucher = getById(voucherId);
+        if (voucher == null) {
+            return Result.fail("秒杀券不存在");
+        }
+        // 2.更新数据库库存
+        boolean success = seckillVoucherService.update()
+                .setSql("stock = stock + " + amount)
+                .eq("voucher_id", voucherId)
+                .update();
+        if (!success) {
+            return Result.fail("秒杀券不存在");
+        }
+        afterCommit(() -> {
+            // 3.补充Redis库存，清除售罄标记
+            seckillStock.replenish(voucherId, amount);
+            // 4.店铺优惠券列表包含库存，删除缓存
+            cacheClient.evict(cacheClient.buildKey(CACHE_SHOP_VOUCHER_KEY, voucher.getShopId()));
+        });
+        return Result.ok();
+    }
+
+    /**
+     * Redis库存和缓存在事务提交之后再修改，数据库回滚时不会多出库存、提前清除售罄标记
+     */
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
     }
 
 
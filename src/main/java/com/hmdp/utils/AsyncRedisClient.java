@@ -0,0 +1,83 @@
+package com.hmdp.utils;
+
+import io.lettuce.core.AbstractRedisClient;
+import io.lettuce.core.RedisClient;
+import io.lettuce.core.api.StatefulConnection;
+import io.lettuce.core.api.StatefulRedisConnection;
+import io.lettuce.core.cluster.RedisClusterClient;
+import io.lettuce.core.cluster.api.StatefulRedisClusterConnection;
+import io.lettuce.core.cluster.api.async.RedisClusterAsyncCommands;
+import io.lettuce.core.codec.ByteArrayCodec;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 基于Lettuce异步命令的Redis客户端，不占用调用线程等待网络往返
+ * 单独建立一条多路复用的连接，第一次使用时才连接
+ * 注意：返回的future在Lettuce的IO线程上完成，后续阶段里不要执行阻塞操作
+ */
+@Component
+public class AsyncRedisClient {
+
+    private final LettuceConnectionFactory connectionFactory;
+
+    private volatile StatefulConnection<byte[], byte[]> connection;
+
+    private volatile RedisClusterAsyncCommands<byte[], byte[]> commands;
+
+    public AsyncRedisClient(RedisConnectionFactory connectionFactory) {
+        this.connectionFactory = (LettuceConnectionFactory) connectionFactory;
+    }
+
+    public CompletableFuture<byte[]> get(String key) {
+        return commands().get(rawKey(key)).toCompletableFuture();
+    }
+
+    public CompletableFuture<String> setEx(String key, long seconds, byte[] value) {
+        return commands().setex(rawKey(key), seconds, value).toCompletableFuture();
+    }
+
+    public CompletableFuture<Double> zScore(String key, String member) {
+        return commands().zscore(rawKey(key), rawKey(member)).toCompletableFuture();
+    }
+
+    private RedisClusterAsyncCommands<byte[], byte[]> commands() {
+        RedisClusterAsyncCommands<byte[], byte[]> c = commands;
+        if (c != null) {
+            return c;
+        }
+        synchronized (this) {
+            if (commands == null) {
+                AbstractRedisClient client = connectionFactory.getRequiredNativeClient();
+                if (client instanceof RedisClusterClient) {
+                    StatefulRedisClusterConnection<byte[], byte[]> conn =
+                            ((RedisClusterClient) client).connect(ByteArrayCodec.INSTANCE);
+                    connection = conn;
+                    commands = conn.async();
+                } else {
+                    StatefulRedisConnection<byte[], byte[]> conn =
+                            ((RedisClient) client).connect(ByteArrayCodec.INSTANCE);
+                    connection = conn;
+                    commands = conn.async();
+                }
+            }
+            return commands;
+        }
+    }
+
+    private static byte[] rawKey(String key) {
+        return key.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @PreDestroy
+    public void close() {
+        if (connection != null) {
+            connection.close();
+        }
+    }
+}
@@ -0,0 +1,329 @@
+package com.hmdp.utils;
+
+import cn.hutool.core.lang.hash.MurmurHash;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 紧凑的二进制编解码
+ * 格式：魔数(1) + 格式版本(1) + 类型(1) + 结构指纹(4) + [逻辑过期时间(8) + 重建耗时(8)] + 各字段
+ * 字段按名称排序依次写入，每个字段一个字节的空值标记，不写字段名
+ * 类的字段发生变化时结构指纹不同，旧数据按未命中处理
+ * 解码时校验长度字段不超过剩余数据，损坏的数据同样按未命中处理，不会分配超大数组
+ * 只支持字段都是基本类型/字符串/时间的扁平对象，其它对象交给JSON编解码
+ */
+public class BinaryCacheCodec implements CacheCodec {
+
+    public static final byte MAGIC = (byte) 0xB7;
+    private static final byte FORMAT_VERSION = 1;
+    private static final byte KIND_VALUE = 0;
+    private static final byte KIND_LOGICAL = 1;
+
+    private final Map<Class<?>, Schema> schemas = new ConcurrentHashMap<>();
+
+    /**
+     * 该类型能否用二进制编码
+     */
+    public boolean canEncode(Class<?> type) {
+        return schemaOf(type) != null;
+    }
+
+    @Override
+    public boolean supports(byte[] bytes) {
+        return bytes.length > 2 && bytes[0] == MAGIC && bytes[1] == FORMAT_VERSION;
+    }
+
+    @Override
+    public byte[] encode(Object value) {
+        Schema schema = requireSchema(value.getClass());
+        ByteArrayOutputStream bos = new ByteArrayOutputStream(256);
+        try (DataOutputStream out = new DataOutputStream(bos)) {
+            writeHeader(out, KIND_VALUE, schema);
+            schema.write(out, value);
+        } catch (IOException | IllegalAccessException e) {
+            throw new IllegalStateException("缓存编码失败: " + value.getClass().getName(), e);
+        }
+        return bos.toByteArray();
+    }
+
+    @Override
+    public <R> R decode(byte[] bytes, Class<R> type) {
+        Schema schema = schemaOf(type);
+        if (schema == null) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes))) {
+            if (!readHeader(in, KIND_VALUE, schema)) {
+                return null;
+            }
+            return type.cast(schema.read(in));
+        } catch (IOException | ReflectiveOperationException | RuntimeException e) {
+            // 数据截断或损坏（长度越界、BigDecimal/时间格式错误等）
+            return null;
+        }
+    }
+
+    @Override
+    public byte[] encodeLogical(RedisData redisData) {
+        Object value = redisData.getData();
+        Schema schema = requireSchema(value.getClass());
+        ByteArrayOutputStream bos = new ByteArrayOutputStream(256);
+        try (DataOutputStream out = new DataOutputStream(bos)) {
+            writeHeader(out, KIND_LOGICAL, schema);
+            out.writeLong(redisData.getExpireTime().toInstant(ZoneOffset.UTC).toEpochMilli());
+            out.writeLong(redisData.getDelta() == null ? 0L : redisData.getDelta());
+            schema.write(out, value);
+        } catch (IOException | IllegalAccessException e) {
+            throw new IllegalStateException("缓存编码失败: " + value.getClass().getName(), e);
+        }
+        return bos.toByteArray();
+    }
+
+    @Override
+    public <R> RedisData decodeLogical(byte[] bytes, Class<R> type) {
+        Schema schema = schemaOf(type);
+        if (schema == null) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes))) {
+            if (!readHeader(in, KIND_LOGICAL, schema)) {
+                return null;
+            }
+            RedisData redisData = new RedisData();
+            redisData.setExpireTime(LocalDateTime.ofInstant(Instant.ofEpochMilli(in.readLong()), ZoneOffset.UTC));
+            redisData.setDelta(in.readLong());
+            redisData.setData(schema.read(in));
+            return redisData;
+        } catch (IOException | ReflectiveOperationException | RuntimeException e) {
+            // 数据截断或损坏（长度越界、BigDecimal/时间格式错误等）
+            return null;
+        }
+    }
+
+    private void writeHeader(DataOutputStream out, byte kind, Schema schema) throws IOException {
+        out.writeByte(MAGIC);
+        out.writeByte(FORMAT_VERSION);
+        out.writeByte(kind);
+        out.writeInt(schema.fingerprint);
+    }
+
+    private boolean readHeader(DataInputStream in, byte kind, Schema schema) throws IOException {
+        return in.readByte() == MAGIC && in.readByte() == FORMAT_VERSION
+                && in.readByte() == kind && in.readInt() == schema.fingerprint;
+    }
+
+    private Schema requireSchema(Class<?> type) {
+        Schema schema = schemaOf(type);
+        if (schema == null) {
+            throw new IllegalArgumentException("不支持二进制编码的类型: " + type.getName());
+        }
+        return schema;
+    }
+
+    private Schema schemaOf(Class<?> type) {
+        Schema schema = schemas.get(type);
+        if (schema == null) {
+            schema = Schema.of(type);
+            // 不支持的类型也缓存下来（用UNSUPPORTED占位），避免重复反射
+            schemas.putIfAbsent(type, schema == null ? Schema.UNSUPPORTED : schema);
+        }
+        return schema == Schema.UNSUPPORTED ? null : schema;
+    }
+
+    /**
+     * 字段类型
+     */
+    private enum FieldType {
+        STRING, LONG, INT, DOUBLE, FLOAT, SHORT, BYTE, BOOLEAN, LOCAL_DATE_TIME, BIG_DECIMAL;
+
+        static FieldType of(Class<?> c) {
+            if (c == String.class) return STRING;
+            if (c == Long.class || c == long.class) return LONG;
+            if (c == Integer.class || c == int.class) return INT;
+            if (c == Double.class || c == double.class) return DOUBLE;
+            if (c == Float.class || c == float.class) return FLOAT;
+            if (c == Short.class || c == short.class) return SHORT;
+            if (c == Byte.class || c == byte.class) return BYTE;
+            if (c == Boolean.class || c == boolean.class) return BOOLEAN;
+            if (c == LocalDateTime.class) return LOCAL_DATE_TIME;
+            if (c == BigDecimal.class) return BIG_DECIMAL;
+            return null;
+        }
+    }
+
+    /**
+     * 类结构：参与编码的字段及其类型
+     */
+    private static final class Schema {
+
+        static final Schema UNSUPPORTED = new Schema(null, new Field[0], new FieldType[0], 0);
+
+        final Class<?> type;
+        final Field[] fields;
+        final FieldType[] fieldTypes;
+        final int fingerprint;
+
+        Schema(Class<?> type, Field[] fields, FieldType[] fieldTypes, int fingerprint) {
+            this.type = type;
+            this.fields = fields;
+            this.fieldTypes = fieldTypes;
+            this.fingerprint = fingerprint;
+        }
+
+        static Schema of(Class<?> type) {
+            try {
+                type.getDeclaredConstructor();
+            } catch (NoSuchMethodException e) {
+                return null;
+            }
+            List<Field> fields = new ArrayList<>();
+            for (Class<?> c = type; c != null && c != Object.class; c = c.getSuperclass()) {
+                for (Field field : c.getDeclaredFields()) {
+                    int mod = field.getModifiers();
+                    if (Modifier.isStatic(mod) || Modifier.isTransient(mod)) {
+                        continue;
+                    }
+                    if (FieldType.of(field.getType()) == null) {
+                        return null;
+                    }
+                    fields.add(field);
+                }
+            }
+            fields.sort(Comparator.comparing(Field::getName));
+            Field[] fieldArray = fields.toArray(new Field[0]);
+            FieldType[] fieldTypes = new FieldType[fieldArray.length];
+            StringBuilder signature = new StringBuilder(type.getName());
+            for (int i = 0; i < fieldArray.length; i++) {
+                fieldArray[i].setAccessible(true);
+                fieldTypes[i] = FieldType.of(fieldArray[i].getType());
+                signature.append('|').append(fieldArray[i].getName()).append(':').append(fieldTypes[i]);
+            }
+            return new Schema(type, fieldArray, fieldTypes, MurmurHash.hash32(signature));
+        }
+
+        void write(DataOutputStream out, Object value) throws IOException, IllegalAccessException {
+            for (int i = 0; i < fields.length; i++) {
+                Object v = fields[i].get(value);
+                if (v == null) {
+                    out.writeBoolean(false);
+                    continue;
+                }
+                out.writeBoolean(true);
+                switch (fieldTypes[i]) {
+                    case STRING:
+                        writeBytes(out, ((String) v).getBytes(StandardCharsets.UTF_8));
+                        break;
+                    case LONG:
+                        out.writeLong((Long) v);
+                        break;
+                    case INT:
+                        out.writeInt((Integer) v);
+                        break;
+                    case DOUBLE:
+                        out.writeDouble((Double) v);
+                        break;
+                    case FLOAT:
+                        out.writeFloat((Float) v);
+                        break;
+                    case SHORT:
+                        out.writeShort((Short) v);
+                        break;
+                    case BYTE:
+                        out.writeByte((Byte) v);
+                        break;
+                    case BOOLEAN:
+                        out.writeBoolean((Boolean) v);
+                        break;
+                    case LOCAL_DATE_TIME:
+                        LocalDateTime time = (LocalDateTime) v;
+                        out.writeLong(time.toEpochSecond(ZoneOffset.UTC));
+                        out.writeInt(time.getNano());
+                        break;
+                    case BIG_DECIMAL:
+                        writeBytes(out, v.toString().getBytes(StandardCharsets.UTF_8));
+                        break;
+                    default:
+                        throw new IllegalStateException();
+                }
+            }
+        }
+
+        Object read(DataInputStream in) throws IOException, ReflectiveOperationException {
+            Object value = type.getDeclaredConstructor().newInstance();
+            for (int i = 0; i < fields.length; i++) {
+                if (!in.readBoolean()) {
+                    continue;
+                }
+                Object v;
+                switch (fieldTypes[i]) {
+                    case STRING:
+                        v = new String(readBytes(in), StandardCharsets.UTF_8);
+                        break;
+                    case LONG:
+                        v = in.readLong();
+                        break;
+                    case INT:
+                        v = in.readInt();
+                        break;
+                    case DOUBLE:
+                        v = in.readDouble();
+                        break;
+                    case FLOAT:
+                        v = in.readFloat();
+                        break;
+                    case SHORT:
+                        v = in.readShort();
+                        break;
+                    case BYTE:
+                        v = in.readByte();
+                        break;
+                    case BOOLEAN:
+                        v = in.readBoolean();
+                        break;
+                    case LOCAL_DATE_TIME:
+                        v = LocalDateTime.ofEpochSecond(in.readLong(), in.readInt(), ZoneOffset.UTC);
+                        break;
+                    case BIG_DECIMAL:
+                        v = new BigDecimal(new String(readBytes(in), StandardCharsets.UTF_8));
+                        break;
+                    default:
+                        throw new IllegalStateException();
+                }
+                fields[i].set(value, v);
+            }
+            return value;
+        }
+
+        private static void writeBytes(DataOutputStream out, byte[] bytes) throws IOException {
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+
+        private static byte[] readBytes(DataInputStream in) throws IOException {
+            int length = in.readInt();
+            // 底层是ByteArrayInputStream，available就是剩余的字节数
+            if (length < 0 || length > in.available()) {
+                throw new IOException("长度越界: " + length);
+            }
+            byte[] bytes = new byte[length];
+            in.readFully(bytes);
+            return bytes;
+        }
+    }
+}
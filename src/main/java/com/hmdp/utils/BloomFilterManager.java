@@ -0,0 +1,158 @@
+package com.hmdp.utils;
+
+import com.hmdp.config.CacheProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import static com.hmdp.utils.RedisConstants.BLOOM_ADD_TOPIC;
+import static com.hmdp.utils.RedisConstants.BLOOM_FILTER_KEY;
+import static com.hmdp.utils.RedisConstants.BLOOM_SEEDED_SUFFIX;
+
+/**
+ * 按缓存key前缀管理布隆过滤器
+ * 位图只由一个节点用数据库中的全部id初始化（bloom:prefix:seeded 标记：seeding -> done，done过期后重新初始化），
+ * 其它节点加载位图；之后本地镜像靠添加广播更新，并定期从位图重新加载，判断始终只查本地
+ */
+@Slf4j
+@Component
+public class BloomFilterManager {
+
+    private static final String SEEDING = "seeding";
+    private static final String SEEDED = "done";
+
+    private final StringRedisTemplate stringRedisTemplate;
+
+    private final CacheProperties cacheProperties;
+
+    private final RedisCircuitBreaker redisCircuitBreaker;
+
+    private final Map<String, RedisBloomFilter> filters = new ConcurrentHashMap<>();
+
+    /**
+     * 前缀 -> 查询数据库中全部id，用于初始化位图
+     */
+    private final Map<String, Supplier<Collection<String>>> loaders = new ConcurrentHashMap<>();
+
+    private final ScheduledExecutorService resyncExecutor = Executors.newSingleThreadScheduledExecutor(
+            r -> new Thread(r, "bloom-resync"));
+
+    public BloomFilterManager(StringRedisTemplate stringRedisTemplate, CacheProperties cacheProperties,
+                              RedisCircuitBreaker redisCircuitBreaker) {
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.cacheProperties = cacheProperties;
+        this.redisCircuitBreaker = redisCircuitBreaker;
+        long period = cacheProperties.getBloom().getResyncSeconds();
+        resyncExecutor.scheduleWithFixedDelay(this::resyncAll, period, period, TimeUnit.SECONDS);
+    }
+
+    /**
+     * 为某个key前缀注册布隆过滤器：位图没有初始化或已经过期时由本节点初始化，否则加载Redis中的位图
+     * @param loader 查询数据库中的全部id
+     */
+    public RedisBloomFilter register(String keyPrefix, Supplier<Collection<String>> loader) {
+        loaders.put(keyPrefix, loader);
+        RedisBloomFilter filter = filters.computeIfAbsent(keyPrefix, prefix -> {
+            CacheProperties.Bloom bloom = cacheProperties.getBloom();
+            return new RedisBloomFilter(
+                    BLOOM_FILTER_KEY + prefix, bloom.getExpectedInsertions(), bloom.getFpp(), stringRedisTemplate);
+        });
+        sync(keyPrefix, filter);
+        return filter;
+    }
+
+    /**
+     * 判断id是否可能存在，只查本地镜像；没有注册过滤器或过滤器未就绪时一律放行
+     */
+    public boolean mightContain(String keyPrefix, Object id) {
+        RedisBloomFilter filter = filters.get(keyPrefix);
+        if (filter == null || !filter.isReady()) {
+            return true;
+        }
+        return filter.mightContain(String.valueOf(id));
+    }
+
+    /**
+     * 添加新id，并广播给其它节点更新本地镜像
+     * Redis不可用时只更新本地，其它节点在位图下次重新初始化时补齐
+     */
+    public void add(String keyPrefix, Object id) {
+        RedisBloomFilter filter = filters.get(keyPrefix);
+        if (filter == null) {
+            return;
+        }
+        String value = String.valueOf(id);
+        filter.addLocal(value);
+        redisCircuitBreaker.run(() -> {
+            filter.addRemote(value);
+            // 消息格式：前缀 + 换行 + id
+            stringRedisTemplate.convertAndSend(BLOOM_ADD_TOPIC, keyPrefix + "\n" + value);
+        });
+    }
+
+    /**
+     * 处理其它节点的添加广播
+     */
+    public void onAdd(String message) {
+        int index = message.lastIndexOf('\n');
+        if (index < 0) {
+            return;
+        }
+        RedisBloomFilter filter = filters.get(message.substring(0, index));
+        if (filter != null) {
+            filter.addLocal(message.substring(index + 1));
+        }
+    }
+
+    private void resyncAll() {
+        filters.forEach((prefix, filter) -> {
+            try {
+                sync(prefix, filter);
+            } catch (Exception e) {
+                log.warn("同步布隆过滤器失败, key={}", filter.getKey(), e);
+            }
+        });
+    }
+
+    /**
+     * 1.位图已经初始化：加载到本地镜像，补齐错过的广播
+     * 2.没有初始化（或已经过期）：抢到标记的节点写入全部id，其它节点暂不拦截，等下一次同步
+     */
+    private void sync(String keyPrefix, RedisBloomFilter filter) {
+        CacheProperties.Bloom bloom = cacheProperties.getBloom();
+        String seededKey = filter.getKey() + BLOOM_SEEDED_SUFFIX;
+        String state = stringRedisTemplate.opsForValue().get(seededKey);
+        if (SEEDED.equals(state)) {
+            filter.loadFromRedis();
+            filter.setReady(true);
+            return;
+        }
+        if (state != null || !Boolean.TRUE.equals(stringRedisTemplate.opsForValue()
+                .setIfAbsent(seededKey, SEEDING, bloom.getSeedTimeoutSeconds(), TimeUnit.SECONDS))) {
+            // 其它节点正在初始化
+            return;
+        }
+        long begin = System.currentTimeMillis();
+        Collection<String> ids = loaders.get(keyPrefix).get();
+        // 先加载已有的位图，过期重新初始化期间本节点仍然可以拦截
+        filter.loadFromRedis();
+        filter.addAll(ids);
+        stringRedisTemplate.opsForValue().set(seededKey, SEEDED, bloom.getReseedHours(), TimeUnit.HOURS);
+        filter.setReady(true);
+        log.info("初始化布隆过滤器, key={}, size={}, cost={}ms", filter.getKey(), ids.size(), System.currentTimeMillis() - begin);
+    }
+
+    @PreDestroy
+    private void shutdown() {
+        resyncExecutor.shutdownNow();
+    }
+}
@@ -0,0 +1,11 @@
+package com.hmdp.utils;
+
+/**
+ * 回源数据库的并发已满
+ */
+public class BulkheadFullException extends RuntimeException {
+
+    public BulkheadFullException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,109 @@
+package com.hmdp.utils;
+
+import org.aspectj.lang.JoinPoint;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.AfterReturning;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.context.expression.MethodBasedEvaluationContext;
+import org.springframework.core.DefaultParameterNameDiscoverer;
+import org.springframework.core.Ordered;
+import org.springframework.core.ParameterNameDiscoverer;
+import org.springframework.core.annotation.Order;
+import org.springframework.expression.Expression;
+import org.springframework.expression.ExpressionParser;
+import org.springframework.expression.spel.standard.SpelExpressionParser;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.Resource;
+import java.lang.reflect.Method;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * 处理 Cached 和 CacheInvalidate 注解
+ * 优先级最高，位于事务切面外层：读缓存不开启事务，删除缓存在事务提交之后
+ */
+@Aspect
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class CacheAspect {
+
+    @Resource
+    private CacheClient cacheClient;
+
+    private final ExpressionParser parser = new SpelExpressionParser();
+
+    private final ParameterNameDiscoverer nameDiscoverer = new DefaultParameterNameDiscoverer();
+
+    private final Map<String, Expression> expressions = new ConcurrentHashMap<>();
+
+    @Around("@annotation(cached)")
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public Object around(ProceedingJoinPoint pjp, Cached cached) throws Throwable {
+        Method method = ((MethodSignature) pjp.getSignature()).getMethod();
+        String id = evaluate(cached.key(), method, pjp.getArgs());
+        // 方法本身作为dbFallback
+        Function<String, Object> dbFallback = i -> proceed(pjp);
+        // 1.集合类型
+        if (Collection.class.isAssignableFrom(method.getReturnType())) {
+            if (cached.strategy() != CacheStrategy.PASS_THROUGH) {
+                throw new IllegalStateException("返回集合的方法只支持缓存穿透策略: " + method);
+            }
+            return cacheClient.queryListWithPassThrough(cached.prefix(), id, (Class) cached.elementType(),
+                    (Function) dbFallback, cached.ttl(), cached.unit());
+        }
+        // 2.按策略交给CacheClient
+        Class<Object> type = (Class<Object>) method.getReturnType();
+        switch (cached.strategy()) {
+            case MUTEX:
+                return cacheClient.queryWithMutex(cached.prefix(), id, type, dbFallback, cached.ttl(), cached.unit());
+            case LOGICAL_EXPIRE:
+                return cacheClient.queryWithLogicalExpire(cached.prefix(), id, type, dbFallback, cached.ttl(), cached.unit());
+            default:
+                return cacheClient.queryWithPassThrough(cached.prefix(), id, type, dbFallback, cached.ttl(), cached.unit());
+        }
+    }
+
+    @AfterReturning("@annotation(invalidate)")
+    public void afterReturning(JoinPoint jp, CacheInvalidate invalidate) {
+        Method method = ((MethodSignature) jp.getSignature()).getMethod();
+        String key = cacheClient.buildKey(invalidate.prefix(), evaluate(invalidate.key(), method, jp.getArgs()));
+        // 外层还有事务时，等提交后再删除，避免并发读回填旧值
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCommit() {
+                    cacheClient.evict(key);
+                }
+            });
+        } else {
+            cacheClient.evict(key);
+        }
+    }
+
+    private String evaluate(String key, Method method, Object[] args) {
+        if (key.isEmpty()) {
+            return "";
+        }
+        Expression expression = expressions.computeIfAbsent(key, parser::parseExpression);
+        MethodBasedEvaluationContext context = new MethodBasedEvaluationContext(null, method, args, nameDiscoverer);
+        Object value = expression.getValue(context);
+        return value == null ? "" : value.toString();
+    }
+
+    private static Object proceed(ProceedingJoinPoint pjp) {
+        try {
+            return pjp.proceed();
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -1,21 +1,43 @@
 package com.hmdp.utils;
 
+import cn.hutool.core.bean.BeanUtil;
 import cn.hutool.core.util.BooleanUtil;
-import cn.hutool.core.util.StrUtil;
-import cn.hutool.json.JSONObject;
-import cn.hutool.json.JSONUtil;
+import com.hmdp.config.CacheProperties;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.connection.ReturnType;
+import org.springframework.data.redis.core.RedisCallback;
 import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.serializer.GenericToStringSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
 import org.springframework.stereotype.Component;
 
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
+import java.util.function.Supplier;
 
+import static com.hmdp.utils.RedisConstants.CACHE_INVALIDATE_TOPIC;
 import static com.hmdp.utils.RedisConstants.CACHE_NULL_TTL;
-import static com.hmdp.utils.RedisConstants.LOCK_SHOP_KEY;
+import static com.hmdp.utils.RedisConstants.CACHE_REBUILT_TOPIC;
+import static com.hmdp.utils.RedisConstants.CACHE_VERSION_SUFFIX;
+import static com.hmdp.utils.RedisConstants.CACHE_VERSION_TTL;
+import static com.hmdp.utils.RedisConstants.LOCK_CACHE_KEY;
+import static com.hmdp.utils.RedisConstants.LOCK_SHOP_TTL;
 
 @Slf4j
 @Component
@@ -23,155 +45,888 @@ public class CacheClient {
 
     private final StringRedisTemplate stringRedisTemplate;
 
-    private static final ExecutorService CACHE_REBUILD_EXECUTOR = Executors.newFixedThreadPool(10);
+    private final CacheProperties cacheProperties;
 
-    public CacheClient(StringRedisTemplate stringRedisTemplate) {
+    private final CacheSerializer cacheSerializer;
+
+    private final LocalCache localCache;
+
+    private final BloomFilterManager bloomFilterManager;
+
+    private final RebuildNotifier rebuildNotifier;
+
+    private final HotKeyDetector hotKeyDetector;
+
+    private final CacheMetrics cacheMetrics;
+
+    private final CacheRebuildScheduler rebuildScheduler;
+
+    private final CacheExpiryPolicy expiryPolicy;
+
+    private final AsyncRedisClient asyncRedisClient;
+
+    private final RedisCircuitBreaker redisCircuitBreaker;
+
+    private final DbBulkhead dbBulkhead;
+
+    private final CacheNamespace cacheNamespace;
+
+    /**
+     * 异步查询回源数据库的线程池
+     */
+    private final Executor cacheLoadExecutor;
+
+    /**
+     * 同一节点内同一个key的并发重建合并为一次
+     */
+    private final SingleFlight singleFlight = new SingleFlight();
+
+    /**
+     * 等待其它节点重建的最大轮数，每轮最多等待一个锁的有效期
+     */
+    private static final int MAX_REBUILD_WAIT_ROUNDS = 3;
+
+    private static final DefaultRedisScript<Long> VERSIONED_SET_SCRIPT;
+    private static final DefaultRedisScript<Long> VERSIONED_EVICT_SCRIPT;
+
+    /**
+     * 在管道中用EVAL执行，预先读出脚本内容
+     */
+    private static final byte[] RAW_VERSIONED_SET_SCRIPT;
+    private static final RedisSerializer<Long> VERSION_RESULT_SERIALIZER = new GenericToStringSerializer<>(Long.class);
+
+    /**
+     * rawGet的返回值：Redis读取失败或被熔断器拒绝，按引用比较，和未命中（null）、空值（NULL_MARKER）区分
+     */
+    private static final byte[] REDIS_UNAVAILABLE = new byte[]{0};
+
+    static {
+        VERSIONED_SET_SCRIPT = new DefaultRedisScript<>();
+        VERSIONED_SET_SCRIPT.setLocation(new ClassPathResource("versioned_set.lua"));
+        VERSIONED_SET_SCRIPT.setResultType(Long.class);
+        RAW_VERSIONED_SET_SCRIPT = VERSIONED_SET_SCRIPT.getScriptAsString().getBytes(StandardCharsets.UTF_8);
+        VERSIONED_EVICT_SCRIPT = new DefaultRedisScript<>();
+        VERSIONED_EVICT_SCRIPT.setLocation(new ClassPathResource("versioned_evict.lua"));
+        VERSIONED_EVICT_SCRIPT.setResultType(Long.class);
+    }
+
+
+    public CacheClient(StringRedisTemplate stringRedisTemplate, CacheProperties cacheProperties,
+                       CacheSerializer cacheSerializer, LocalCache localCache,
+                       BloomFilterManager bloomFilterManager, RebuildNotifier rebuildNotifier,
+                       HotKeyDetector hotKeyDetector, CacheMetrics cacheMetrics,
+                       CacheRebuildScheduler rebuildScheduler, CacheExpiryPolicy expiryPolicy,
+                       AsyncRedisClient asyncRedisClient, RedisCircuitBreaker redisCircuitBreaker,
+                       DbBulkhead dbBulkhead, CacheNamespace cacheNamespace,
+                       @Qualifier("cacheLoadExecutor") Executor cacheLoadExecutor) {
         this.stringRedisTemplate = stringRedisTemplate;
+        this.cacheProperties = cacheProperties;
+        this.cacheSerializer = cacheSerializer;
+        this.localCache = localCache;
+        this.bloomFilterManager = bloomFilterManager;
+        this.rebuildNotifier = rebuildNotifier;
+        this.hotKeyDetector = hotKeyDetector;
+        this.cacheMetrics = cacheMetrics;
+        this.rebuildScheduler = rebuildScheduler;
+        this.expiryPolicy = expiryPolicy;
+        this.asyncRedisClient = asyncRedisClient;
+        this.redisCircuitBreaker = redisCircuitBreaker;
+        this.dbBulkhead = dbBulkhead;
+        this.cacheNamespace = cacheNamespace;
+        this.cacheLoadExecutor = cacheLoadExecutor;
+    }
+
+    /**
+     * 构造缓存key，key中带有前缀（命名空间）当前的代数
+     */
+    public String buildKey(String keyPrefix, Object id) {
+        return cacheNamespace.key(keyPrefix, id);
+    }
+
+    /**
+     * 整批失效一个命名空间下的所有缓存，只需要一次INCR，旧key等TTL自然过期
+     */
+    public long evictNamespace(String keyPrefix) {
+        return cacheNamespace.bump(keyPrefix);
     }
 
     public void set(String key, Object value, Long time, TimeUnit unit) {
-        stringRedisTemplate.opsForValue().set(key, JSONUtil.toJsonStr(value), time, unit);
+        rawSet(key, cacheSerializer.serialize(value), expiryPolicy.ttlSeconds(key, unit.toSeconds(time)));
+    }
+
+    /**
+     * 管道批量写入缓存
+     * 带版本号时每条用 versioned_set.lua 写入，不会覆盖缓存中相同或更新的版本（见 setVersioned）
+     * @param versionGetter 从数据中取版本号，可以为空
+     */
+    public <R, ID> void setBatch(String keyPrefix, Collection<R> values, Function<R, ID> idGetter,
+                                 Function<R, Long> versionGetter, Long time, TimeUnit unit) {
+        long ttlSeconds = unit.toSeconds(time);
+        redisCircuitBreaker.callBulk(() -> stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (R value : values) {
+                String key = buildKey(keyPrefix, idGetter.apply(value));
+                long ttl = expiryPolicy.ttlSeconds(key, ttlSeconds);
+                Long version = versionGetter == null ? null : versionGetter.apply(value);
+                if (version == null) {
+                    connection.setEx(rawKey(key), ttl, cacheSerializer.serialize(value));
+                    continue;
+                }
+                connection.eval(RAW_VERSIONED_SET_SCRIPT, ReturnType.INTEGER, 2,
+                        rawKey(key), rawKey(key + CACHE_VERSION_SUFFIX),
+                        rawKey(version.toString()), cacheSerializer.serialize(value), rawKey(String.valueOf(ttl)));
+            }
+            return null;
+        }));
+    }
+
+    /**
+     * 写入不过期的缓存
+     */
+    public void set(String key, Object value) {
+        rawSet(key, cacheSerializer.serialize(value), -1);
+    }
+
+    /**
+     * 读取集合类型的缓存，不存在时返回null
+     */
+    public <R> List<R> getList(String key, Class<R> elementType) {
+        byte[] bytes = rawGet(key);
+        if (bytes == null || bytes == REDIS_UNAVAILABLE || bytes.length == 0) {
+            return null;
+        }
+        return cacheSerializer.deserializeList(bytes, elementType);
     }
 
     public void setWithLogicalExpire(String key, Object value, Long time, TimeUnit unit) {
+        setWithLogicalExpire(key, value, time, unit, 0L);
+    }
+
+    /**
+     * @param delta 本次重建耗时（毫秒），用于概率提前刷新
+     */
+    public void setWithLogicalExpire(String key, Object value, Long time, TimeUnit unit, long delta) {
         // 设置逻辑过期
         RedisData redisData = new RedisData();
         redisData.setData(value);
-        redisData.setExpireTime(LocalDateTime.now().plusSeconds(unit.toSeconds(time)));
+        redisData.setExpireTime(LocalDateTime.now().plusSeconds(expiryPolicy.ttlSeconds(key, unit.toSeconds(time))));
+        redisData.setDelta(delta);
         // 写入Redis
-        stringRedisTemplate.opsForValue().set(key, JSONUtil.toJsonStr(redisData));
+        rawSet(key, cacheSerializer.serializeLogical(redisData), -1);
+    }
+
+    /**
+     * 带版本号写入缓存，版本号key为 key + CACHE_VERSION_SUFFIX
+     * Lua脚本原子地比较版本：缓存中的版本（或更新后留下的版本标记）不比本次旧时拒绝写入
+     * @return 是否写入
+     */
+    public boolean setVersioned(String key, Object value, Long version, Long time, TimeUnit unit) {
+        if (version == null) {
+            set(key, value, time, unit);
+            return true;
+        }
+        long ttlSeconds = expiryPolicy.ttlSeconds(key, unit.toSeconds(time));
+        Long result = redisCircuitBreaker.execute(() -> stringRedisTemplate.execute(VERSIONED_SET_SCRIPT,
+                RedisSerializer.byteArray(), VERSION_RESULT_SERIALIZER,
+                Arrays.asList(key, key + CACHE_VERSION_SUFFIX),
+                rawKey(version.toString()), cacheSerializer.serialize(value), rawKey(String.valueOf(ttlSeconds))),
+                () -> 0L);
+        return result != null && result == 1L;
+    }
+
+    /**
+     * 数据更新后删除缓存，同时留下新版本号的标记，阻止之前读到旧数据的重建写入
+     * 失败时抛出异常，由调用方重试
+     */
+    public void evictVersioned(String key, long version) {
+        localCache.invalidate(key);
+        redisCircuitBreaker.call(() -> {
+            stringRedisTemplate.execute(VERSIONED_EVICT_SCRIPT, RedisSerializer.byteArray(), VERSION_RESULT_SERIALIZER,
+                    Arrays.asList(key, key + CACHE_VERSION_SUFFIX),
+                    rawKey(String.valueOf(version)), rawKey(String.valueOf(TimeUnit.MINUTES.toSeconds(CACHE_VERSION_TTL))));
+            stringRedisTemplate.convertAndSend(CACHE_INVALIDATE_TOPIC, key);
+            return null;
+        });
+    }
+
+    /**
+     * 删除缓存，并广播给所有节点删除本地缓存
+     * 同时删除版本号key，否则之后同一版本的重建会被拒绝，直到版本号过期
+     */
+    public void evict(String key) {
+        localCache.invalidate(key);
+        redisCircuitBreaker.call(() -> {
+            stringRedisTemplate.delete(Arrays.asList(key, key + CACHE_VERSION_SUFFIX));
+            stringRedisTemplate.convertAndSend(CACHE_INVALIDATE_TOPIC, key);
+            return null;
+        });
+    }
+
+    /**
+     * 批量删除缓存，一次DEL
+     */
+    public void evictAll(Collection<String> keys) {
+        if (keys.isEmpty()) {
+            return;
+        }
+        keys.forEach(localCache::invalidate);
+        List<String> rawKeys = new ArrayList<>(keys.size() * 2);
+        for (String key : keys) {
+            rawKeys.add(key);
+            rawKeys.add(key + CACHE_VERSION_SUFFIX);
+        }
+        redisCircuitBreaker.call(() -> {
+            stringRedisTemplate.delete(rawKeys);
+            for (String key : keys) {
+                stringRedisTemplate.convertAndSend(CACHE_INVALIDATE_TOPIC, key);
+            }
+            return null;
+        });
     }
 
     public <R,ID> R queryWithPassThrough(
             String keyPrefix, ID id, Class<R> type, Function<ID, R> dbFallback, Long time, TimeUnit unit){
-        String key = keyPrefix + id;
-        // 1.从redis查询商铺缓存
-        String json = stringRedisTemplate.opsForValue().get(key);
-        // 2.判断是否存在
-        if (StrUtil.isNotBlank(json)) {
-            // 3.存在，直接返回
-            return JSONUtil.toBean(json, type);
+        return doQueryWithPassThrough(keyPrefix, id, bytes -> cacheSerializer.deserialize(bytes, type),
+                dbFallback, null, time, unit);
+    }
+
+    /**
+     * 缓存穿透，重建时带版本号写入，版本号比缓存中的旧时放弃写入（见 setVersioned）
+     * @param versionGetter 从数据中取版本号，例如更新时间
+     */
+    public <R,ID> R queryWithPassThrough(
+            String keyPrefix, ID id, Class<R> type, Function<ID, R> dbFallback, Function<R, Long> versionGetter,
+            Long time, TimeUnit unit){
+        return doQueryWithPassThrough(keyPrefix, id, bytes -> cacheSerializer.deserialize(bytes, type),
+                dbFallback, versionGetter, time, unit);
+    }
+
+    /**
+     * 缓存穿透，缓存的值是集合
+     */
+    public <E, ID> List<E> queryListWithPassThrough(
+            String keyPrefix, ID id, Class<E> elementType, Function<ID, List<E>> dbFallback, Long time, TimeUnit unit) {
+        return doQueryWithPassThrough(keyPrefix, id, bytes -> cacheSerializer.deserializeList(bytes, elementType),
+                dbFallback, null, time, unit);
+    }
+
+    @SuppressWarnings("unchecked")
+    private <R, ID> R doQueryWithPassThrough(
+            String keyPrefix, ID id, Function<byte[], R> decoder, Function<ID, R> dbFallback,
+            Function<R, Long> versionGetter, Long time, TimeUnit unit) {
+        // 0.布隆过滤器判定不存在的，直接返回
+        if (!bloomFilterManager.mightContain(keyPrefix, id)) {
+            cacheMetrics.record(keyPrefix, CacheMetrics.PASS_THROUGH, CacheMetrics.BLOOM_REJECT);
+            return null;
+        }
+        String key = buildKey(keyPrefix, id);
+        // 0.统计访问频率，热点key会提升到本地缓存
+        boolean hot = hotKeyDetector.record(key);
+        // 0.先查本地缓存
+        Object local = localCache.get(key);
+        if (local != null) {
+            cacheMetrics.record(keyPrefix, CacheMetrics.PASS_THROUGH, CacheMetrics.LOCAL_HIT);
+            return local == LocalCache.NULL_VALUE ? null : (R) local;
+        }
+        // 0.Redis熔断中，降级读取
+        if (!redisCircuitBreaker.isAvailable()) {
+            return degradedQuery(keyPrefix, CacheMetrics.PASS_THROUGH, key, () -> dbFallback.apply(id));
+        }
+        // 1.从redis查询商铺缓存，被熔断器拒绝（半开状态名额已满）或读取失败时同样降级
+        byte[] bytes = rawGet(key);
+        if (bytes == REDIS_UNAVAILABLE) {
+            return degradedQuery(keyPrefix, CacheMetrics.PASS_THROUGH, key, () -> dbFallback.apply(id));
         }
         // 判断命中的是否是空值
-        if (json != null) {
+        if (CacheSerializer.isNullMarker(bytes)) {
+            cacheMetrics.record(keyPrefix, CacheMetrics.PASS_THROUGH, CacheMetrics.NULL_HIT);
+            localCache.put(key, null, hot);
             // 返回一个错误信息
             return null;
         }
+        // 2.判断是否存在（格式不兼容的旧数据按未命中处理）
+        R cached = bytes == null ? null : decoder.apply(bytes);
+        if (cached != null) {
+            // 3.存在，直接返回
+            cacheMetrics.record(keyPrefix, CacheMetrics.PASS_THROUGH, CacheMetrics.HIT);
+            localCache.put(key, cached, hot);
+            return cached;
+        }
 
         // 4.不存在，根据id查询数据库
-        R r = dbFallback.apply(id);
+        cacheMetrics.record(keyPrefix, CacheMetrics.PASS_THROUGH, CacheMetrics.MISS);
+        R r = cacheMetrics.recordRebuild(keyPrefix, CacheMetrics.PASS_THROUGH,
+                () -> dbBulkhead.execute(() -> dbFallback.apply(id)));
         // 5.不存在，返回错误
         if (r == null) {
             // 将空值写入redis
-            stringRedisTemplate.opsForValue().set(key, "", CACHE_NULL_TTL, TimeUnit.MINUTES);
+            setNull(key);
             // 返回错误信息
             return null;
         }
         // 6.存在，写入redis
-        this.set(key, r, time, unit);
+        if (versionGetter == null) {
+            this.set(key, r, time, unit);
+        } else if (!setVersioned(key, r, versionGetter.apply(r), time, unit)) {
+            // 查到的是旧数据，已经有更新的版本，不写入任何缓存
+            return r;
+        }
+        localCache.put(key, r, hot);
         return r;
     }
 
+    /**
+     * 批量查询：一次MGET查缓存，未命中的id一次性查库，再用管道回写缓存（包括空值）
+     * @param dbFallback 根据id集合批量查询数据库，例如 listByIds
+     * @param idGetter 从查询结果中取出id，用于和未命中的id对应
+     * @return 按传入id的顺序返回，不存在的id不出现在结果中
+     */
+    public <R, ID> List<R> queryBatchWithPassThrough(
+            String keyPrefix, Collection<ID> ids, Class<R> type, Function<Collection<ID>, List<R>> dbFallback,
+            Function<R, ID> idGetter, Long time, TimeUnit unit) {
+        if (ids == null || ids.isEmpty()) {
+            return new ArrayList<>();
+        }
+        // 1.布隆过滤器判定不存在的直接跳过，整批使用同一代数的前缀
+        String prefix = cacheNamespace.prefix(keyPrefix);
+        List<ID> candidates = new ArrayList<>(ids.size());
+        List<String> keys = new ArrayList<>(ids.size());
+        for (ID id : ids) {
+            if (bloomFilterManager.mightContain(keyPrefix, id)) {
+                candidates.add(id);
+                keys.add(prefix + id);
+                // 只统计频率，批量结果会被调用方修改，不提升到本地共享
+                hotKeyDetector.record(prefix + id);
+            }
+        }
+        cacheMetrics.record(keyPrefix, CacheMetrics.BATCH, CacheMetrics.BLOOM_REJECT, ids.size() - candidates.size());
+        if (candidates.isEmpty()) {
+            return new ArrayList<>();
+        }
+        // 2.MGET一次查出所有缓存，Redis不可用时查过期副本
+        boolean available = redisCircuitBreaker.isAvailable();
+        List<byte[]> values = !available ? null : redisCircuitBreaker.executeBulk(() ->
+                stringRedisTemplate.execute((RedisCallback<List<byte[]>>) connection ->
+                        connection.mGet(keys.stream().map(CacheClient::rawKey).toArray(byte[][]::new))), () -> null);
+        Map<String, R> found = new HashMap<>(candidates.size());
+        List<ID> misses = new ArrayList<>();
+        int nullHits = 0;
+        int staleHits = 0;
+        for (int i = 0; i < candidates.size(); i++) {
+            if (values == null) {
+                Object stale = localCache.getStale(keys.get(i));
+                if (stale != null && stale != LocalCache.NULL_VALUE) {
+                    staleHits++;
+                    // 批量结果会被调用方修改（例如按当前用户填充字段），返回副本，不能返回本地共享的对象
+                    found.put(String.valueOf(candidates.get(i)), BeanUtil.copyProperties(stale, type));
+                } else {
+                    misses.add(candidates.get(i));
+                }
+                continue;
+            }
+            byte[] bytes = values.get(i);
+            if (CacheSerializer.isNullMarker(bytes)) {
+                // 2.1.空值缓存，直接跳过
+                nullHits++;
+                continue;
+            }
+            R r = bytes == null ? null : cacheSerializer.deserialize(bytes, type);
+            if (r != null) {
+                // 2.2.命中
+                found.put(String.valueOf(candidates.get(i)), r);
+            } else {
+                // 2.3.未命中
+                misses.add(candidates.get(i));
+            }
+        }
+        cacheMetrics.record(keyPrefix, CacheMetrics.BATCH, CacheMetrics.HIT, found.size());
+        cacheMetrics.record(keyPrefix, CacheMetrics.BATCH, CacheMetrics.NULL_HIT, nullHits);
+        cacheMetrics.record(keyPrefix, CacheMetrics.BATCH, CacheMetrics.STALE_HIT, staleHits);
+        cacheMetrics.record(keyPrefix, CacheMetrics.BATCH, CacheMetrics.MISS, misses.size());
+        // 3.未命中的一次性查询数据库，并用管道回写
+        if (!misses.isEmpty()) {
+            List<R> loaded = cacheMetrics.recordRebuild(keyPrefix, CacheMetrics.BATCH,
+                    () -> dbBulkhead.execute(() -> dbFallback.apply(misses)));
+            Map<String, R> loadedMap = new HashMap<>(misses.size());
+            if (loaded != null) {
+                for (R r : loaded) {
+                    loadedMap.put(String.valueOf(idGetter.apply(r)), r);
+                }
+            }
+            found.putAll(loadedMap);
+            if (values == null) {
+                // Redis不可用，只保存过期副本；返回的对象会被调用方修改，保存副本
+                loadedMap.forEach((id, r) -> localCache.putStale(prefix + id, BeanUtil.copyProperties(r, type)));
+                return collect(ids, found);
+            }
+            long ttlSeconds = unit.toSeconds(time);
+            long nullTtlSeconds = TimeUnit.MINUTES.toSeconds(CACHE_NULL_TTL);
+            redisCircuitBreaker.runBulk(() -> stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                for (ID id : misses) {
+                    String key = prefix + id;
+                    R r = loadedMap.get(String.valueOf(id));
+                    if (r == null) {
+                        // 数据库也不存在，写入空值
+                        connection.setEx(rawKey(key), expiryPolicy.ttlSeconds(key, nullTtlSeconds), CacheSerializer.NULL_MARKER);
+                    } else {
+                        connection.setEx(rawKey(key), expiryPolicy.ttlSeconds(key, ttlSeconds), cacheSerializer.serialize(r));
+                    }
+                }
+                return null;
+            }));
+        }
+        // 4.按传入顺序组装结果
+        return collect(ids, found);
+    }
+
+    private static <R, ID> List<R> collect(Collection<ID> ids, Map<String, R> found) {
+        List<R> result = new ArrayList<>(found.size());
+        for (ID id : ids) {
+            R r = found.get(String.valueOf(id));
+            if (r != null) {
+                result.add(r);
+            }
+        }
+        return result;
+    }
+
     public <R, ID> R queryWithLogicalExpire(
             String keyPrefix, ID id, Class<R> type, Function<ID, R> dbFallback, Long time, TimeUnit unit) {
-        String key = keyPrefix + id;
-        // 1.从redis查询商铺缓存
-        String json = stringRedisTemplate.opsForValue().get(key);
-        // 2.判断是否存在
-        if (StrUtil.isBlank(json)) {
-            // 3.存在，直接返回
-            return null;
+        return queryWithLogicalExpire(keyPrefix, id, type, dbFallback, time, unit, cacheProperties.getXfetchBeta());
+    }
+
+    /**
+     * 逻辑过期 + 概率提前刷新（XFetch）
+     * 越接近过期时间、上次重建耗时越长，读请求触发后台重建的概率越大
+     * @param beta 提前刷新的激进程度，0表示只在过期后重建
+     */
+    public <R, ID> R queryWithLogicalExpire(
+            String keyPrefix, ID id, Class<R> type, Function<ID, R> dbFallback, Long time, TimeUnit unit,
+            double beta) {
+        String key = buildKey(keyPrefix, id);
+        boolean hot = hotKeyDetector.record(key);
+        RedisData redisData;
+        R r;
+        // 0.先查本地缓存，本地缓存的是反序列化后的RedisData，逻辑未过期才使用
+        Object local = localCache.get(key);
+        if (local instanceof RedisData && ((RedisData) local).getExpireTime().isAfter(LocalDateTime.now())) {
+            cacheMetrics.record(keyPrefix, CacheMetrics.LOGICAL_EXPIRE, CacheMetrics.LOCAL_HIT);
+            redisData = (RedisData) local;
+            r = type.cast(redisData.getData());
+        } else if (!redisCircuitBreaker.isAvailable()) {
+            // 0.Redis熔断中，降级读取
+            return degradedQuery(keyPrefix, CacheMetrics.LOGICAL_EXPIRE, key, () -> dbFallback.apply(id));
+        } else {
+            // 1.从redis查询商铺缓存，被熔断器拒绝或读取失败时降级
+            byte[] bytes = rawGet(key);
+            if (bytes == REDIS_UNAVAILABLE) {
+                return degradedQuery(keyPrefix, CacheMetrics.LOGICAL_EXPIRE, key, () -> dbFallback.apply(id));
+            }
+            // 2.判断是否存在
+            if (bytes == null || bytes.length == 0) {
+                // 3.不存在，直接返回
+                cacheMetrics.record(keyPrefix, CacheMetrics.LOGICAL_EXPIRE, CacheMetrics.MISS);
+                return null;
+            }
+            // 4.命中，反序列化（data字段直接解析为目标类型）
+            redisData = cacheSerializer.deserializeLogical(bytes, type);
+            if (redisData == null) {
+                // 格式不兼容或数据损坏，提交重建覆盖这个key，本次按未命中返回
+                cacheMetrics.record(keyPrefix, CacheMetrics.LOGICAL_EXPIRE, CacheMetrics.MISS);
+                rebuildLogical(keyPrefix, id, key, dbFallback, time, unit);
+                return null;
+            }
+            cacheMetrics.record(keyPrefix, CacheMetrics.LOGICAL_EXPIRE, CacheMetrics.HIT);
+            r = type.cast(redisData.getData());
+            localCache.put(key, redisData, hot);
         }
-        // 4.命中，需要先把json反序列化为对象
-        RedisData redisData = JSONUtil.toBean(json, RedisData.class);
-        R r = JSONUtil.toBean((JSONObject) redisData.getData(), type);
-        LocalDateTime expireTime = redisData.getExpireTime();
-        // 5.判断是否过期
-        if(expireTime.isAfter(LocalDateTime.now())) {
-            // 5.1.未过期，直接返回店铺信息
+        // 5.判断是否需要刷新（已过期，或按概率提前刷新）
+        if (!shouldRefresh(redisData, beta)) {
+            // 5.1.不需要，直接返回店铺信息
             return r;
         }
-        // 5.2.已过期，需要缓存重建
+        // 5.2.需要缓存重建
         // 6.缓存重建
-        // 6.1.获取互斥锁
-        String lockKey = LOCK_SHOP_KEY + id;
-        boolean isLock = tryLock(lockKey);
-        // 6.2.判断是否获取锁成功
-        if (isLock){
-            // 6.3.成功，开启独立线程，实现缓存重建
-            CACHE_REBUILD_EXECUTOR.submit(() -> {
-                try {
-                    // 查询数据库
-                    R newR = dbFallback.apply(id);
-                    // 重建缓存
-                    this.setWithLogicalExpire(key, newR, time, unit);
-                } catch (Exception e) {
-                    throw new RuntimeException(e);
-                }finally {
-                    // 释放锁
-                    unlock(lockKey);
-                }
-            });
-        }
-        // 6.4.返回过期的商铺信息
+        rebuildLogical(keyPrefix, id, key, dbFallback, time, unit);
+        // 6.4.返回旧的商铺信息
         return r;
     }
 
+    /**
+     * 提交逻辑过期的重建任务，在重建线程中获取互斥锁，调用线程不等待
+     */
+    private <R, ID> void rebuildLogical(
+            String keyPrefix, ID id, String key, Function<ID, R> dbFallback, Long time, TimeUnit unit) {
+        // 6.1.本节点已有重建任务时直接合并
+        if (rebuildScheduler.isPending(key)) {
+            return;
+        }
+        String lockKey = LOCK_CACHE_KEY + key;
+        rebuildScheduler.submit(key, () -> {
+            // 6.2.获取互斥锁，失败说明其它节点正在重建；Redis不可用时不重建，继续返回旧数据
+            if (!Boolean.TRUE.equals(tryLock(lockKey))) {
+                return;
+            }
+            // 6.3.成功，实现缓存重建
+            try {
+                // 查询数据库，并记录重建耗时
+                long begin = System.currentTimeMillis();
+                R newR = cacheMetrics.recordRebuild(keyPrefix, CacheMetrics.LOGICAL_EXPIRE,
+                        () -> dbBulkhead.execute(() -> dbFallback.apply(id)));
+                long delta = System.currentTimeMillis() - begin;
+                // 重建缓存
+                this.setWithLogicalExpire(key, newR, time, unit, delta);
+                // 通知各节点丢弃旧的本地副本
+                localCache.invalidate(key);
+                redisCircuitBreaker.run(() -> stringRedisTemplate.convertAndSend(CACHE_INVALIDATE_TOPIC, key));
+            } catch (Exception e) {
+                log.error("缓存重建失败, key={}", key, e);
+            } finally {
+                // 释放锁
+                unlock(lockKey);
+            }
+        });
+    }
+
+    /**
+     * 缓存穿透的异步版本：基于Lettuce异步命令，调用线程不等待Redis往返，可以同时发起多个查询再合并结果
+     * Redis命令经过熔断器，熔断、被拒绝或读取失败时返回过期副本或查库（降级）
+     * @param dbFallback 查询数据库，在 cacheLoadExecutor 中经过舱壁执行，不会在Redis的IO线程上阻塞
+     */
+    public <R, ID> CompletableFuture<R> queryWithPassThroughAsync(
+            String keyPrefix, ID id, Class<R> type, Function<ID, R> dbFallback, Long time, TimeUnit unit) {
+        // 0.布隆过滤器判定不存在的，直接返回
+        if (!bloomFilterManager.mightContain(keyPrefix, id)) {
+            cacheMetrics.record(keyPrefix, CacheMetrics.PASS_THROUGH, CacheMetrics.BLOOM_REJECT);
+            return CompletableFuture.completedFuture(null);
+        }
+        String key = buildKey(keyPrefix, id);
+        boolean hot = hotKeyDetector.record(key);
+        // 0.先查本地缓存
+        Object local = localCache.get(key);
+        if (local != null) {
+            cacheMetrics.record(keyPrefix, CacheMetrics.PASS_THROUGH, CacheMetrics.LOCAL_HIT);
+            return CompletableFuture.completedFuture(local == LocalCache.NULL_VALUE ? null : type.cast(local));
+        }
+        // 0.Redis熔断中，降级读取
+        if (!redisCircuitBreaker.isAvailable()) {
+            return degradedQueryAsync(keyPrefix, key, type, () -> dbFallback.apply(id));
+        }
+        // 1.异步查询redis，被熔断器拒绝或读取失败时降级
+        return redisCircuitBreaker.callAsync(() -> asyncRedisClient.get(key))
+                .handle((bytes, e) -> e != null ? REDIS_UNAVAILABLE : bytes)
+                .thenCompose(bytes -> {
+                    if (bytes == REDIS_UNAVAILABLE) {
+                        return degradedQueryAsync(keyPrefix, key, type, () -> dbFallback.apply(id));
+                    }
+                    // 2.命中空值
+                    if (CacheSerializer.isNullMarker(bytes)) {
+                        cacheMetrics.record(keyPrefix, CacheMetrics.PASS_THROUGH, CacheMetrics.NULL_HIT);
+                        localCache.put(key, null, hot);
+                        return CompletableFuture.completedFuture(null);
+                    }
+                    // 3.命中，直接返回
+                    R cached = bytes == null ? null : cacheSerializer.deserialize(bytes, type);
+                    if (cached != null) {
+                        cacheMetrics.record(keyPrefix, CacheMetrics.PASS_THROUGH, CacheMetrics.HIT);
+                        localCache.put(key, cached, hot);
+                        return CompletableFuture.completedFuture(cached);
+                    }
+                    // 4.未命中，在线程池中查询数据库，再异步回写（不等待写入完成）
+                    cacheMetrics.record(keyPrefix, CacheMetrics.PASS_THROUGH, CacheMetrics.MISS);
+                    return loadAsync(keyPrefix, CacheMetrics.PASS_THROUGH, () -> dbFallback.apply(id)).thenApply(r -> {
+                        byte[] value = r == null ? CacheSerializer.NULL_MARKER : cacheSerializer.serialize(r);
+                        long ttlSeconds = r == null ? TimeUnit.MINUTES.toSeconds(CACHE_NULL_TTL) : unit.toSeconds(time);
+                        redisCircuitBreaker.callAsync(() ->
+                                asyncRedisClient.setEx(key, expiryPolicy.ttlSeconds(key, ttlSeconds), value));
+                        localCache.put(key, r, hot);
+                        return r;
+                    });
+                });
+    }
+
+    /**
+     * 逻辑过期的异步版本，过期时在重建线程池中查库并回写
+     * Redis熔断、被拒绝或读取失败时返回过期副本，没有副本时返回null（和未预热一样）
+     */
+    public <R, ID> CompletableFuture<R> queryWithLogicalExpireAsync(
+            String keyPrefix, ID id, Class<R> type, Function<ID, R> dbFallback, Long time, TimeUnit unit) {
+        String key = buildKey(keyPrefix, id);
+        boolean hot = hotKeyDetector.record(key);
+        double beta = cacheProperties.getXfetchBeta();
+        // 0.先查本地缓存
+        Object local = localCache.get(key);
+        if (local instanceof RedisData && ((RedisData) local).getExpireTime().isAfter(LocalDateTime.now())) {
+            cacheMetrics.record(keyPrefix, CacheMetrics.LOGICAL_EXPIRE, CacheMetrics.LOCAL_HIT);
+            RedisData redisData = (RedisData) local;
+            if (shouldRefresh(redisData, beta)) {
+                rebuildLogical(keyPrefix, id, key, dbFallback, time, unit);
+            }
+            return CompletableFuture.completedFuture(type.cast(redisData.getData()));
+        }
+        // 0.Redis熔断中，返回过期副本
+        if (!redisCircuitBreaker.isAvailable()) {
+            return CompletableFuture.completedFuture(staleLogical(keyPrefix, key, type));
+        }
+        // 1.异步查询redis，被熔断器拒绝或读取失败时返回过期副本
+        return redisCircuitBreaker.callAsync(() -> asyncRedisClient.get(key))
+                .handle((bytes, e) -> e != null ? REDIS_UNAVAILABLE : bytes)
+                .thenApply(bytes -> {
+                    if (bytes == REDIS_UNAVAILABLE) {
+                        return staleLogical(keyPrefix, key, type);
+                    }
+                    // 2.不存在（未预热）直接返回；格式不兼容或数据损坏时提交重建覆盖这个key
+                    if (bytes == null || bytes.length == 0) {
+                        cacheMetrics.record(keyPrefix, CacheMetrics.LOGICAL_EXPIRE, CacheMetrics.MISS);
+                        return null;
+                    }
+                    RedisData redisData = cacheSerializer.deserializeLogical(bytes, type);
+                    if (redisData == null) {
+                        cacheMetrics.record(keyPrefix, CacheMetrics.LOGICAL_EXPIRE, CacheMetrics.MISS);
+                        rebuildLogical(keyPrefix, id, key, dbFallback, time, unit);
+                        return null;
+                    }
+                    cacheMetrics.record(keyPrefix, CacheMetrics.LOGICAL_EXPIRE, CacheMetrics.HIT);
+                    localCache.put(key, redisData, hot);
+                    // 3.需要刷新时提交重建任务，返回旧数据
+                    if (shouldRefresh(redisData, beta)) {
+                        rebuildLogical(keyPrefix, id, key, dbFallback, time, unit);
+                    }
+                    return type.cast(redisData.getData());
+                });
+    }
+
+    private <R> R staleLogical(String keyPrefix, String key, Class<R> type) {
+        Object stale = localCache.getStale(key);
+        cacheMetrics.record(keyPrefix, CacheMetrics.LOGICAL_EXPIRE,
+                stale instanceof RedisData ? CacheMetrics.STALE_HIT : CacheMetrics.MISS);
+        return stale instanceof RedisData ? type.cast(((RedisData) stale).getData()) : null;
+    }
+
+    /**
+     * degradedQuery的异步版本：优先返回本地过期副本，没有时在线程池中经过舱壁查库，结果只保存到本地
+     */
+    private <R> CompletableFuture<R> degradedQueryAsync(String keyPrefix, String key, Class<R> type, Supplier<R> loader) {
+        Object stale = localCache.getStale(key);
+        if (stale != null) {
+            cacheMetrics.record(keyPrefix, CacheMetrics.PASS_THROUGH, CacheMetrics.STALE_HIT);
+            return CompletableFuture.completedFuture(stale == LocalCache.NULL_VALUE ? null : type.cast(stale));
+        }
+        cacheMetrics.record(keyPrefix, CacheMetrics.PASS_THROUGH, CacheMetrics.MISS);
+        return loadAsync(keyPrefix, CacheMetrics.PASS_THROUGH, loader).thenApply(r -> {
+            localCache.putStale(key, r);
+            return r;
+        });
+    }
+
+    /**
+     * 在 cacheLoadExecutor 中经过舱壁查询数据库，不能在Redis的IO线程上查库
+     * 线程池已满时和舱壁已满一样，返回以 BulkheadFullException 失败的future，只影响这一次查询
+     */
+    private <R> CompletableFuture<R> loadAsync(String keyPrefix, String strategy, Supplier<R> loader) {
+        try {
+            return CompletableFuture.supplyAsync(() -> cacheMetrics.recordRebuild(keyPrefix, strategy,
+                    () -> dbBulkhead.execute(loader)), cacheLoadExecutor);
+        } catch (RejectedExecutionException e) {
+            CompletableFuture<R> future = new CompletableFuture<>();
+            future.completeExceptionally(new BulkheadFullException("数据库繁忙，请稍后重试"));
+            return future;
+        }
+    }
+
+    /**
+     * XFetch：now - delta * beta * ln(rand) >= expireTime 时刷新
+     * -ln(rand) 服从指数分布，过期后一定刷新
+     */
+    private boolean shouldRefresh(RedisData redisData, double beta) {
+        long expireMillis = redisData.getExpireTime().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        long now = System.currentTimeMillis();
+        if (now >= expireMillis) {
+            return true;
+        }
+        Long delta = redisData.getDelta();
+        if (delta == null || delta <= 0 || beta <= 0) {
+            return false;
+        }
+        double gap = delta * beta * -Math.log(1 - ThreadLocalRandom.current().nextDouble());
+        return now + gap >= expireMillis;
+    }
+
     public <R, ID> R queryWithMutex(
             String keyPrefix, ID id, Class<R> type, Function<ID, R> dbFallback, Long time, TimeUnit unit) {
-        String key = keyPrefix + id;
-        // 1.从redis查询商铺缓存
-        String shopJson = stringRedisTemplate.opsForValue().get(key);
-        // 2.判断是否存在
-        if (StrUtil.isNotBlank(shopJson)) {
-            // 3.存在，直接返回
-            return JSONUtil.toBean(shopJson, type);
+        // 0.布隆过滤器判定不存在的，直接返回
+        if (!bloomFilterManager.mightContain(keyPrefix, id)) {
+            cacheMetrics.record(keyPrefix, CacheMetrics.MUTEX, CacheMetrics.BLOOM_REJECT);
+            return null;
+        }
+        String key = buildKey(keyPrefix, id);
+        // 0.热点key直接读本地
+        boolean hot = hotKeyDetector.record(key);
+        Object local = hot ? localCache.get(key) : null;
+        if (local != null) {
+            cacheMetrics.record(keyPrefix, CacheMetrics.MUTEX, CacheMetrics.LOCAL_HIT);
+            return local == LocalCache.NULL_VALUE ? null : type.cast(local);
+        }
+        // 0.Redis熔断中，降级读取
+        if (!redisCircuitBreaker.isAvailable()) {
+            return degradedQuery(keyPrefix, CacheMetrics.MUTEX, key, () -> dbFallback.apply(id));
+        }
+        // 1.从redis查询商铺缓存，被熔断器拒绝或读取失败时降级
+        byte[] bytes = rawGet(key);
+        if (bytes == REDIS_UNAVAILABLE) {
+            return degradedQuery(keyPrefix, CacheMetrics.MUTEX, key, () -> dbFallback.apply(id));
         }
         // 判断命中的是否是空值
-        if (shopJson != null) {
+        if (CacheSerializer.isNullMarker(bytes)) {
+            cacheMetrics.record(keyPrefix, CacheMetrics.MUTEX, CacheMetrics.NULL_HIT);
             // 返回一个错误信息
             return null;
         }
+        // 2.判断是否存在
+        R cached = bytes == null ? null : cacheSerializer.deserialize(bytes, type);
+        if (cached != null) {
+            // 3.存在，直接返回
+            cacheMetrics.record(keyPrefix, CacheMetrics.MUTEX, CacheMetrics.HIT);
+            if (hot) {
+                localCache.put(key, cached, true);
+            } else {
+                localCache.putStale(key, cached);
+            }
+            return cached;
+        }
 
-        // 4.实现缓存重建
-        // 4.1.获取互斥锁
-        String lockKey = LOCK_SHOP_KEY + id;
-        R r = null;
-        try {
-            boolean isLock = tryLock(lockKey);
-            // 4.2.判断是否获取成功
-            if (!isLock) {
-                // 4.3.获取锁失败，休眠并重试
-                Thread.sleep(50);
-                return queryWithMutex(keyPrefix, id, type, dbFallback, time, unit);
-            }
-            // 4.4.获取锁成功，根据id查询数据库
-            r = dbFallback.apply(id);
-            // 5.不存在，返回错误
-            if (r == null) {
-                // 将空值写入redis
-                stringRedisTemplate.opsForValue().set(key, "", CACHE_NULL_TTL, TimeUnit.MINUTES);
-                // 返回错误信息
+        // 4.实现缓存重建，本节点的并发请求共享同一次重建
+        cacheMetrics.record(keyPrefix, CacheMetrics.MUTEX, CacheMetrics.MISS);
+        return singleFlight.execute(key, () -> rebuildWithMutex(keyPrefix, id, type, dbFallback, time, unit));
+    }
+
+    private <R, ID> R rebuildWithMutex(
+            String keyPrefix, ID id, Class<R> type, Function<ID, R> dbFallback, Long time, TimeUnit unit) {
+        String key = buildKey(keyPrefix, id);
+        String lockKey = LOCK_CACHE_KEY + key;
+        long waitBegin = System.nanoTime();
+        for (int i = 0; i < MAX_REBUILD_WAIT_ROUNDS; i++) {
+            // 4.1.获取互斥锁，只用于节点之间的互斥；Redis不可用时不加锁，降级读取
+            Boolean locked = tryLock(lockKey);
+            if (locked == null) {
+                return degradedQuery(keyPrefix, CacheMetrics.MUTEX, key, () -> dbFallback.apply(id));
+            }
+            if (locked) {
+                cacheMetrics.recordLockWait(keyPrefix, CacheMetrics.MUTEX, System.nanoTime() - waitBegin);
+                try {
+                    // 4.2.获取锁成功，再次检查缓存，可能刚被其它节点重建
+                    byte[] bytes = rawGet(key);
+                    if (bytes == REDIS_UNAVAILABLE) {
+                        return degradedQuery(keyPrefix, CacheMetrics.MUTEX, key, () -> dbFallback.apply(id));
+                    }
+                    if (CacheSerializer.isNullMarker(bytes)) {
+                        return null;
+                    }
+                    R cached = bytes == null ? null : cacheSerializer.deserialize(bytes, type);
+                    if (cached != null) {
+                        return cached;
+                    }
+                    // 4.3.根据id查询数据库
+                    R r = cacheMetrics.recordRebuild(keyPrefix, CacheMetrics.MUTEX,
+                            () -> dbBulkhead.execute(() -> dbFallback.apply(id)));
+                    // 5.不存在，返回错误
+                    if (r == null) {
+                        // 将空值写入redis
+                        setNull(key);
+                        return null;
+                    }
+                    // 6.存在，写入redis
+                    this.set(key, r, time, unit);
+                    return r;
+                } finally {
+                    // 7.释放锁，并通知等待的节点
+                    unlock(lockKey);
+                    redisCircuitBreaker.run(() -> stringRedisTemplate.convertAndSend(CACHE_REBUILT_TOPIC, key));
+                }
+            }
+            // 8.获取锁失败，等待持有锁的节点重建完成
+            CompletableFuture<Void> signal = rebuildNotifier.register(key);
+            byte[] bytes = rawGet(key);
+            if (bytes == null) {
+                rebuildNotifier.await(key, signal, LOCK_SHOP_TTL, TimeUnit.SECONDS);
+                bytes = rawGet(key);
+            } else {
+                rebuildNotifier.cancel(key, signal);
+            }
+            if (bytes == REDIS_UNAVAILABLE) {
+                return degradedQuery(keyPrefix, CacheMetrics.MUTEX, key, () -> dbFallback.apply(id));
+            }
+            if (CacheSerializer.isNullMarker(bytes)) {
+                cacheMetrics.recordLockWait(keyPrefix, CacheMetrics.MUTEX, System.nanoTime() - waitBegin);
                 return null;
             }
-            // 6.存在，写入redis
-            this.set(key, r, time, unit);
-        } catch (InterruptedException e) {
-            throw new RuntimeException(e);
-        }finally {
-            // 7.释放锁
-            unlock(lockKey);
+            R cached = bytes == null ? null : cacheSerializer.deserialize(bytes, type);
+            if (cached != null) {
+                cacheMetrics.recordLockWait(keyPrefix, CacheMetrics.MUTEX, System.nanoTime() - waitBegin);
+                return cached;
+            }
+        }
+        // 9.多轮等待仍未重建成功，直接查询数据库兜底
+        return dbBulkhead.execute(() -> dbFallback.apply(id));
+    }
+
+    /**
+     * Redis熔断时的降级读取：优先返回本地过期副本，没有时经过舱壁限流查库，结果只保存到本地
+     */
+    @SuppressWarnings("unchecked")
+    private <R> R degradedQuery(String keyPrefix, String strategy, String key, Supplier<R> loader) {
+        Object stale = localCache.getStale(key);
+        if (stale != null) {
+            cacheMetrics.record(keyPrefix, strategy, CacheMetrics.STALE_HIT);
+            if (stale == LocalCache.NULL_VALUE) {
+                return null;
+            }
+            return (R) (stale instanceof RedisData ? ((RedisData) stale).getData() : stale);
         }
-        // 8.返回
+        cacheMetrics.record(keyPrefix, strategy, CacheMetrics.MISS);
+        R r = cacheMetrics.recordRebuild(keyPrefix, strategy, () -> dbBulkhead.execute(loader));
+        localCache.putStale(key, r);
         return r;
     }
 
-    private boolean tryLock(String key) {
-        Boolean flag = stringRedisTemplate.opsForValue().setIfAbsent(key, "1", 10, TimeUnit.SECONDS);
-        return BooleanUtil.isTrue(flag);
+    /**
+     * 读取失败或被熔断器拒绝时返回 REDIS_UNAVAILABLE，调用方走降级逻辑，不能当作未命中
+     */
+    private byte[] rawGet(String key) {
+        return redisCircuitBreaker.execute(() -> stringRedisTemplate.execute(
+                (RedisCallback<byte[]>) connection -> connection.get(rawKey(key))), () -> REDIS_UNAVAILABLE);
+    }
+
+    /**
+     * @param ttlSeconds 小于等于0表示不过期
+     */
+    private void rawSet(String key, byte[] value, long ttlSeconds) {
+        redisCircuitBreaker.run(() -> stringRedisTemplate.execute((RedisCallback<Object>) connection -> {
+            if (ttlSeconds > 0) {
+                connection.setEx(rawKey(key), ttlSeconds, value);
+            } else {
+                connection.set(rawKey(key), value);
+            }
+            return null;
+        }));
+    }
+
+    private void setNull(String key) {
+        rawSet(key, CacheSerializer.NULL_MARKER, expiryPolicy.ttlSeconds(key, TimeUnit.MINUTES.toSeconds(CACHE_NULL_TTL)));
+    }
+
+    private static byte[] rawKey(String key) {
+        return key.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return 是否加锁成功，Redis不可用（失败或被熔断器拒绝）时返回null，调用方走降级逻辑
+     */
+    private Boolean tryLock(String key) {
+        return redisCircuitBreaker.execute(() -> BooleanUtil.isTrue(
+                stringRedisTemplate.opsForValue().setIfAbsent(key, "1", 10, TimeUnit.SECONDS)), () -> null);
     }
 
     private void unlock(String key) {
-        stringRedisTemplate.delete(key);
+        redisCircuitBreaker.run(() -> stringRedisTemplate.delete(key));
     }
 }
@@ -0,0 +1,29 @@
+package com.hmdp.utils;
+
+/**
+ * 缓存值的编解码
+ */
+public interface CacheCodec {
+
+    /**
+     * 能否解码这段数据（根据头部判断）
+     */
+    boolean supports(byte[] bytes);
+
+    byte[] encode(Object value);
+
+    /**
+     * @return 数据与类型不兼容时返回null，调用方按未命中处理
+     */
+    <R> R decode(byte[] bytes, Class<R> type);
+
+    /**
+     * 编码逻辑过期数据，data字段是原始对象
+     */
+    byte[] encodeLogical(RedisData redisData);
+
+    /**
+     * 解码逻辑过期数据，返回的data字段已经是type类型，不需要二次解析
+     */
+    <R> RedisData decodeLogical(byte[] bytes, Class<R> type);
+}
@@ -0,0 +1,76 @@
+package com.hmdp.utils;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 缓存指标汇总 /actuator/cache
+ * 按 key前缀/策略 汇总请求结果、命中率、锁等待和重建耗时，以及各命名空间当前的代数
+ * 只读：actuator不经过登录拦截器，整批失效走需要登录的 POST /admin/cache/namespace
+ */
+@Component
+@Endpoint(id = "cache")
+public class CacheEndpoint {
+
+    private final CacheMetrics cacheMetrics;
+
+    private final CacheNamespace cacheNamespace;
+
+    public CacheEndpoint(CacheMetrics cacheMetrics, CacheNamespace cacheNamespace) {
+        this.cacheMetrics = cacheMetrics;
+        this.cacheNamespace = cacheNamespace;
+    }
+
+    @ReadOperation
+    public Map<String, Object> summary() {
+        Map<String, Map<String, Object>> groups = new TreeMap<>();
+        for (Counter counter : cacheMetrics.getRegistry().find("cache.requests").counters()) {
+            Map<String, Object> group = group(groups, counter.getId().getTag("prefix"), counter.getId().getTag("strategy"));
+            group.put(counter.getId().getTag("result"), (long) counter.count());
+        }
+        for (Timer timer : cacheMetrics.getRegistry().find("cache.lock.wait").timers()) {
+            Map<String, Object> group = group(groups, timer.getId().getTag("prefix"), timer.getId().getTag("strategy"));
+            group.put("lock_wait", timing(timer));
+        }
+        for (Timer timer : cacheMetrics.getRegistry().find("cache.rebuild").timers()) {
+            Map<String, Object> group = group(groups, timer.getId().getTag("prefix"), timer.getId().getTag("strategy"));
+            group.put("rebuild_" + timer.getId().getTag("outcome"), timing(timer));
+        }
+        // 命中率 = (本地命中 + 命中 + 空值命中 + 布隆拦截 + 过期副本) / 总请求
+        for (Map<String, Object> group : groups.values()) {
+            long hits = count(group, CacheMetrics.LOCAL_HIT) + count(group, CacheMetrics.HIT)
+                    + count(group, CacheMetrics.NULL_HIT) + count(group, CacheMetrics.BLOOM_REJECT)
+                    + count(group, CacheMetrics.STALE_HIT);
+            long total = hits + count(group, CacheMetrics.MISS);
+            group.put("hit_ratio", total == 0 ? 0.0 : (double) hits / total);
+        }
+        Map<String, Object> result = new LinkedHashMap<>(groups);
+        result.put("generations", cacheNamespace.snapshot());
+        return result;
+    }
+
+    private Map<String, Object> group(Map<String, Map<String, Object>> groups, String prefix, String strategy) {
+        return groups.computeIfAbsent(prefix + " " + strategy, k -> new LinkedHashMap<>());
+    }
+
+    private long count(Map<String, Object> group, String result) {
+        Object value = group.get(result);
+        return value instanceof Long ? (Long) value : 0L;
+    }
+
+    private Map<String, Object> timing(Timer timer) {
+        Map<String, Object> timing = new LinkedHashMap<>();
+        timing.put("count", timer.count());
+        timing.put("mean_ms", timer.mean(TimeUnit.MILLISECONDS));
+        timing.put("max_ms", timer.max(TimeUnit.MILLISECONDS));
+        return timing;
+    }
+}
@@ -0,0 +1,79 @@
+package com.hmdp.utils;
+
+import cn.hutool.core.lang.hash.MurmurHash;
+import com.hmdp.config.CacheProperties;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 过期时间策略，防止缓存雪崩
+ * 实际TTL = 基础TTL + 按key哈希的固定偏移（spread） + 随机抖动（jitter），只会延长不会缩短
+ * 按key前缀配置（最长前缀匹配），没有配置的前缀使用默认策略
+ * 实际TTL分布记录在 cache.expiry.ttl 直方图中
+ */
+@Component
+public class CacheExpiryPolicy {
+
+    private static final String DEFAULT_PREFIX = "default";
+
+    private final CacheProperties.Expiry defaultExpiry;
+
+    private final Map<String, CacheProperties.Expiry> prefixExpiry;
+
+    private final MeterRegistry registry;
+
+    private final Map<String, DistributionSummary> summaries = new ConcurrentHashMap<>();
+
+    public CacheExpiryPolicy(CacheProperties cacheProperties, MeterRegistry registry) {
+        this.defaultExpiry = cacheProperties.getExpiry();
+        this.prefixExpiry = cacheProperties.getExpiryPrefixes();
+        this.registry = registry;
+    }
+
+    /**
+     * 计算实际TTL
+     * @param baseSeconds 基础TTL（秒），小于等于0表示不过期，原样返回
+     */
+    public long ttlSeconds(String key, long baseSeconds) {
+        if (baseSeconds <= 0) {
+            return baseSeconds;
+        }
+        // 1.找到key对应的策略
+        String prefix = null;
+        for (String candidate : prefixExpiry.keySet()) {
+            if (key.startsWith(candidate) && (prefix == null || candidate.length() > prefix.length())) {
+                prefix = candidate;
+            }
+        }
+        CacheProperties.Expiry expiry = prefix == null ? defaultExpiry : prefixExpiry.get(prefix);
+        if (prefix == null) {
+            prefix = DEFAULT_PREFIX;
+        }
+        long ttl = baseSeconds;
+        // 2.按key哈希固定偏移，同一个key每次写入的偏移相同
+        long spread = (long) (baseSeconds * expiry.getSpreadRatio());
+        if (spread > 0) {
+            ttl += Math.floorMod(MurmurHash.hash32(key), spread + 1);
+        }
+        // 3.随机抖动
+        long jitter = (long) (baseSeconds * expiry.getJitterRatio());
+        if (jitter > 0) {
+            ttl += ThreadLocalRandom.current().nextLong(jitter + 1);
+        }
+        summary(prefix).record(ttl);
+        return ttl;
+    }
+
+    private DistributionSummary summary(String prefix) {
+        return summaries.computeIfAbsent(prefix, p -> DistributionSummary.builder("cache.expiry.ttl")
+                .baseUnit("seconds")
+                .tag("prefix", p)
+                .publishPercentileHistogram()
+                .register(registry));
+    }
+}
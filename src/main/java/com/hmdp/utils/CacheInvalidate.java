@@ -0,0 +1,23 @@
+package com.hmdp.utils;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 方法正常返回后删除缓存，在事务中时等事务提交后再删除
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface CacheInvalidate {
+
+    String prefix();
+
+    /**
+     * SpEL表达式，和 Cached#key 的写法相同
+     */
+    String key() default "";
+}
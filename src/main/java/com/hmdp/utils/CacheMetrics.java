@@ -0,0 +1,97 @@
+package com.hmdp.utils;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * 缓存指标，按key前缀和缓存策略打标签
+ * cache.requests：result = local_hit / hit / null_hit / miss / bloom_reject / stale_hit
+ * cache.lock.wait：等待互斥锁（或等待其它节点重建）的耗时
+ * cache.rebuild：dbFallback重建耗时，outcome = success / failure
+ */
+@Component
+public class CacheMetrics {
+
+    public static final String PASS_THROUGH = "pass_through";
+    public static final String MUTEX = "mutex";
+    public static final String LOGICAL_EXPIRE = "logical_expire";
+    public static final String BATCH = "batch";
+
+    public static final String LOCAL_HIT = "local_hit";
+    public static final String HIT = "hit";
+    public static final String NULL_HIT = "null_hit";
+    public static final String MISS = "miss";
+    public static final String BLOOM_REJECT = "bloom_reject";
+    public static final String STALE_HIT = "stale_hit";
+
+    private final MeterRegistry registry;
+
+    private final Map<String, Counter> counters = new ConcurrentHashMap<>();
+
+    private final Map<String, Timer> timers = new ConcurrentHashMap<>();
+
+    public CacheMetrics(MeterRegistry registry, CacheSerializer cacheSerializer, HotKeyDetector hotKeyDetector) {
+        this.registry = registry;
+        registry.gauge("cache.compression.ratio", cacheSerializer,
+                s -> s.getCompressionStats().snapshot().getRatio());
+        registry.gauge("cache.hot.keys", hotKeyDetector, d -> d.hotKeys().size());
+    }
+
+    public void record(String prefix, String strategy, String result) {
+        record(prefix, strategy, result, 1);
+    }
+
+    public void record(String prefix, String strategy, String result, int count) {
+        if (count <= 0) {
+            return;
+        }
+        counters.computeIfAbsent(prefix + '|' + strategy + '|' + result, k -> Counter.builder("cache.requests")
+                .tag("prefix", prefix)
+                .tag("strategy", strategy)
+                .tag("result", result)
+                .register(registry)).increment(count);
+    }
+
+    public void recordLockWait(String prefix, String strategy, long nanos) {
+        timer("cache.lock.wait", prefix, strategy, null).record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * 执行并记录一次重建
+     */
+    public <R> R recordRebuild(String prefix, String strategy, Supplier<R> loader) {
+        long begin = System.nanoTime();
+        try {
+            R r = loader.get();
+            timer("cache.rebuild", prefix, strategy, "success").record(System.nanoTime() - begin, TimeUnit.NANOSECONDS);
+            return r;
+        } catch (RuntimeException e) {
+            timer("cache.rebuild", prefix, strategy, "failure").record(System.nanoTime() - begin, TimeUnit.NANOSECONDS);
+            throw e;
+        }
+    }
+
+    public MeterRegistry getRegistry() {
+        return registry;
+    }
+
+    private Timer timer(String name, String prefix, String strategy, String outcome) {
+        return timers.computeIfAbsent(name + '|' + prefix + '|' + strategy + '|' + outcome, k -> {
+            Timer.Builder builder = Timer.builder(name)
+                    .tag("prefix", prefix)
+                    .tag("strategy", strategy)
+                    .publishPercentiles(0.5, 0.95, 0.99);
+            if (outcome != null) {
+                builder.tag("outcome", outcome);
+            }
+            return builder.register(registry);
+        });
+    }
+}
@@ -0,0 +1,114 @@
+package com.hmdp.utils;
+
+import cn.hutool.core.util.StrUtil;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static com.hmdp.utils.RedisConstants.CACHE_GEN_KEY;
+import static com.hmdp.utils.RedisConstants.CACHE_GEN_TOPIC;
+
+/**
+ * 缓存命名空间的代数（generation），用于整批失效
+ * 命名空间就是key前缀，代数写在key里：cache:shop:g3:1，代数为0时不加，和原来的key相同
+ * 代数+1后整个命名空间的旧key都不会再被访问，等TTL自然过期，不需要KEYS/SCAN
+ * 代数在本地缓存，变更时通过Redis发布订阅通知其它节点，另外定期从Redis刷新兜底
+ */
+@Slf4j
+@Component
+public class CacheNamespace {
+
+    /**
+     * 本地代数的刷新间隔（毫秒），防止丢失广播后长时间使用旧代数
+     */
+    private static final long REFRESH_MILLIS = 5000;
+
+    private final StringRedisTemplate stringRedisTemplate;
+
+    private final RedisCircuitBreaker redisCircuitBreaker;
+
+    private final Map<String, Generation> generations = new ConcurrentHashMap<>();
+
+    public CacheNamespace(StringRedisTemplate stringRedisTemplate, RedisCircuitBreaker redisCircuitBreaker) {
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.redisCircuitBreaker = redisCircuitBreaker;
+    }
+
+    /**
+     * 带代数的key前缀
+     */
+    public String prefix(String namespace) {
+        long generation = generation(namespace);
+        return generation == 0 ? namespace : namespace + "g" + generation + ":";
+    }
+
+    /**
+     * 带代数的完整key
+     */
+    public String key(String namespace, Object id) {
+        return prefix(namespace) + id;
+    }
+
+    /**
+     * 当前代数，优先使用本地缓存
+     */
+    public long generation(String namespace) {
+        Generation cached = generations.get(namespace);
+        long now = System.currentTimeMillis();
+        if (cached != null && now - cached.loadedAt < REFRESH_MILLIS) {
+            return cached.value;
+        }
+        // Redis不可用时继续使用旧代数
+        long fallback = cached == null ? 0 : cached.value;
+        long value = redisCircuitBreaker.execute(() -> {
+            String gen = stringRedisTemplate.opsForValue().get(CACHE_GEN_KEY + namespace);
+            return StrUtil.isBlank(gen) ? 0L : Long.parseLong(gen);
+        }, () -> fallback);
+        generations.put(namespace, new Generation(value, now));
+        return value;
+    }
+
+    /**
+     * 代数+1，整个命名空间的缓存立即失效
+     * @return 新的代数
+     */
+    public long bump(String namespace) {
+        Long value = redisCircuitBreaker.call(() -> {
+            Long gen = stringRedisTemplate.opsForValue().increment(CACHE_GEN_KEY + namespace);
+            stringRedisTemplate.convertAndSend(CACHE_GEN_TOPIC, namespace);
+            return gen;
+        });
+        generations.put(namespace, new Generation(value, System.currentTimeMillis()));
+        log.info("缓存命名空间失效, namespace={}, generation={}", namespace, value);
+        return value;
+    }
+
+    /**
+     * 其它节点修改了代数，丢弃本地缓存，下次访问重新读取
+     */
+    public void onBump(String namespace) {
+        generations.remove(namespace);
+    }
+
+    /**
+     * 所有已加载的命名空间及其代数
+     */
+    public Map<String, Long> snapshot() {
+        Map<String, Long> result = new ConcurrentHashMap<>();
+        generations.forEach((namespace, generation) -> result.put(namespace, generation.value));
+        return result;
+    }
+
+    private static class Generation {
+        private final long value;
+        private final long loadedAt;
+
+        private Generation(long value, long loadedAt) {
+            this.value = value;
+            this.loadedAt = loadedAt;
+        }
+    }
+}
@@ -0,0 +1,218 @@
+package com.hmdp.utils;
+
+import cn.hutool.core.lang.TypeReference;
+import cn.hutool.json.JSONObject;
+import cn.hutool.json.JSONUtil;
+import com.hmdp.config.CacheProperties;
+import com.hmdp.entity.CacheOutbox;
+import com.hmdp.service.ICacheOutboxService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+/**
+ * 发件箱中继：事务提交后异步删除缓存，或更新hash缓存中变化的字段
+ * 批量认领待处理消息，失败按指数退避重试，成功后延迟再删一次（延迟双删），
+ * 覆盖提交前后并发读回填旧值的情况。事务提交后会主动唤醒，另有定时轮询兜底
+ * 消息先认领再处理，多个节点不会处理同一条消息；同一个key前面的消息没有完成（包括等待重试）时，
+ * 后面的消息不会被处理，保证同一个key按顺序生效
+ */
+@Slf4j
+@Component
+public class CacheOutboxRelay {
+
+    @Resource
+    private ICacheOutboxService cacheOutboxService;
+
+    @Resource
+    private CacheClient cacheClient;
+
+    @Resource
+    private HashCacheClient hashCacheClient;
+
+    @Resource
+    private CacheProperties cacheProperties;
+
+    private final ScheduledExecutorService relayExecutor = Executors.newSingleThreadScheduledExecutor();
+
+    /**
+     * 已经提交了一次唤醒还没执行，合并多余的唤醒
+     */
+    private final AtomicBoolean triggered = new AtomicBoolean(false);
+
+    @PostConstruct
+    private void init() {
+        long interval = cacheProperties.getOutbox().getPollIntervalMillis();
+        relayExecutor.scheduleWithFixedDelay(this::relay, interval, interval, TimeUnit.MILLISECONDS);
+        long purgeInterval = cacheProperties.getOutbox().getPurgeIntervalMillis();
+        relayExecutor.scheduleWithFixedDelay(this::purge, purgeInterval, purgeInterval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 唤醒中继立即处理一轮
+     */
+    public void trigger() {
+        if (triggered.compareAndSet(false, true)) {
+            relayExecutor.execute(() -> {
+                triggered.set(false);
+                relay();
+            });
+        }
+    }
+
+    private void relay() {
+        CacheProperties.Outbox config = cacheProperties.getOutbox();
+        try {
+            while (true) {
+                // 1.认领到期的待处理消息
+                List<CacheOutbox> batch = cacheOutboxService.claimPending(config.getBatchSize(),
+                        config.getClaimTimeoutMillis());
+                if (batch.isEmpty()) {
+                    return;
+                }
+                // 2.批量删除缓存
+                process(batch, config);
+                // 3.不满一批说明已经处理完
+                if (batch.size() < config.getBatchSize()) {
+                    return;
+                }
+            }
+        } catch (Exception e) {
+            log.error("发件箱处理异常", e);
+        }
+    }
+
+    /**
+     * 分批删除超过保留时间的已完成消息，避免发件箱无限增长
+     */
+    private void purge() {
+        CacheProperties.Outbox config = cacheProperties.getOutbox();
+        LocalDateTime before = LocalDateTime.now().minusHours(config.getRetentionHours());
+        try {
+            int total = 0;
+            int deleted;
+            do {
+                deleted = cacheOutboxService.purgeDone(before, config.getPurgeBatchSize());
+                total += deleted;
+            } while (deleted >= config.getPurgeBatchSize());
+            if (total > 0) {
+                log.info("清理已完成的发件箱消息, count={}", total);
+            }
+        } catch (Exception e) {
+            log.warn("清理发件箱失败", e);
+        }
+    }
+
+    private void process(List<CacheOutbox> batch, CacheProperties.Outbox config) {
+        List<CacheOutbox> deletes = new ArrayList<>();
+        List<CacheOutbox> patches = new ArrayList<>();
+        for (CacheOutbox outbox : batch) {
+            if (outbox.getAction() == CacheOutbox.ACTION_PATCH) {
+                patches.add(outbox);
+            } else {
+                deletes.add(outbox);
+            }
+        }
+        // 处理失败的key，这一批中后面同一个key的消息要等它重试成功
+        Set<String> failedKeys = new HashSet<>();
+        if (!deletes.isEmpty()) {
+            processDeletes(deletes, config, failedKeys);
+        }
+        // 按id顺序逐条更新，同一个key的多次更新不会乱序
+        List<CacheOutbox> blocked = new ArrayList<>();
+        for (CacheOutbox outbox : patches) {
+            if (failedKeys.contains(outbox.getCacheKey())) {
+                blocked.add(outbox);
+                continue;
+            }
+            if (!processPatch(outbox, config)) {
+                failedKeys.add(outbox.getCacheKey());
+            }
+        }
+        cacheOutboxService.release(blocked, config.getPollIntervalMillis());
+    }
+
+    private void processDeletes(List<CacheOutbox> batch, CacheProperties.Outbox config, Set<String> failedKeys) {
+        // 带版本号的删除会留下版本标记，旧数据无法再写入，不需要延迟双删
+        Set<String> keys = batch.stream().filter(o -> o.getPayload() == null)
+                .map(CacheOutbox::getCacheKey).collect(Collectors.toSet());
+        try {
+            cacheClient.evictAll(keys);
+            for (CacheOutbox outbox : batch) {
+                if (outbox.getPayload() != null) {
+                    cacheClient.evictVersioned(outbox.getCacheKey(), Long.parseLong(outbox.getPayload()));
+                }
+            }
+        } catch (Exception e) {
+            log.warn("删除缓存失败，稍后重试, keys={}", keys, e);
+            for (CacheOutbox outbox : batch) {
+                failedKeys.add(outbox.getCacheKey());
+                cacheOutboxService.markRetry(outbox, config.getMaxRetries());
+            }
+            return;
+        }
+        cacheOutboxService.markDone(batch.stream().map(CacheOutbox::getId).collect(Collectors.toList()));
+        if (keys.isEmpty()) {
+            return;
+        }
+        // 延迟双删
+        relayExecutor.schedule(() -> {
+            try {
+                cacheClient.evictAll(keys);
+            } catch (Exception e) {
+                log.warn("延迟删除缓存失败, keys={}", keys, e);
+            }
+        }, config.getSecondDeleteDelayMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 更新hash缓存的字段，失败时改为删除缓存（带版本标记），删除也失败时把这条消息改成删除再重试，
+     * 不会在之后重放旧的字段值；带版本号的更新不需要延迟再更新一次
+     * @return 是否处理完成
+     */
+    private boolean processPatch(CacheOutbox outbox, CacheProperties.Outbox config) {
+        JSONObject payload = JSONUtil.parseObj(outbox.getPayload());
+        Long version = payload.getLong("version");
+        Map<String, String> fields = payload.getJSONObject("fields").toBean(
+                new TypeReference<Map<String, String>>() {});
+        try {
+            hashCacheClient.patch(outbox.getCacheKey(), fields, version);
+        } catch (Exception e) {
+            log.warn("更新hash缓存失败，改为删除缓存, key={}", outbox.getCacheKey(), e);
+            outbox.setAction(CacheOutbox.ACTION_DELETE).setPayload(version == null ? null : version.toString());
+            try {
+                if (version == null) {
+                    cacheClient.evict(outbox.getCacheKey());
+                } else {
+                    cacheClient.evictVersioned(outbox.getCacheKey(), version);
+                }
+            } catch (Exception ex) {
+                log.warn("删除hash缓存失败，稍后重试, key={}", outbox.getCacheKey(), ex);
+                cacheOutboxService.markRetry(outbox, config.getMaxRetries());
+                return false;
+            }
+        }
+        cacheOutboxService.markDone(Collections.singletonList(outbox.getId()));
+        return true;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        relayExecutor.shutdown();
+    }
+}
@@ -0,0 +1,99 @@
+package com.hmdp.utils;
+
+import com.hmdp.config.CacheProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 共享的缓存重建线程池
+ * 有界队列，同一个key同时只保留一个重建任务（重复提交直接合并），队列满时丢弃新任务，
+ * 调用方继续返回旧数据，等下一次读取再触发重建
+ */
+@Slf4j
+@Component
+public class CacheRebuildScheduler {
+
+    private final ThreadPoolExecutor executor;
+
+    /**
+     * 排队或执行中的key -> 提交时间（纳秒）
+     */
+    private final Map<String, Long> pending = new ConcurrentHashMap<>();
+
+    private final Timer queueWaitTimer;
+    private final Timer taskTimer;
+    private final Counter rejectedCounter;
+    private final Counter collapsedCounter;
+
+    public CacheRebuildScheduler(CacheProperties cacheProperties, MeterRegistry registry) {
+        CacheProperties.Rebuild config = cacheProperties.getRebuild();
+        AtomicInteger threadId = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(config.getThreads(), config.getThreads(),
+                0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(config.getQueueCapacity()),
+                r -> new Thread(r, "cache-rebuild-" + threadId.incrementAndGet()),
+                new ThreadPoolExecutor.AbortPolicy());
+        this.queueWaitTimer = registry.timer("cache.rebuild.queue.wait");
+        this.taskTimer = registry.timer("cache.rebuild.task");
+        this.rejectedCounter = registry.counter("cache.rebuild.rejected");
+        this.collapsedCounter = registry.counter("cache.rebuild.collapsed");
+        registry.gauge("cache.rebuild.queue.depth", executor, e -> e.getQueue().size());
+        registry.gauge("cache.rebuild.active", executor, ThreadPoolExecutor::getActiveCount);
+        registry.gauge("cache.rebuild.pending.keys", pending, Map::size);
+    }
+
+    /**
+     * 该key是否已经有重建任务在排队或执行
+     */
+    public boolean isPending(String key) {
+        return pending.containsKey(key);
+    }
+
+    /**
+     * 提交重建任务
+     * @return false 表示任务被合并或因队列已满被丢弃，没有执行
+     */
+    public boolean submit(String key, Runnable task) {
+        long submitTime = System.nanoTime();
+        // 1.同一个key已有任务，合并
+        if (pending.putIfAbsent(key, submitTime) != null) {
+            collapsedCounter.increment();
+            return false;
+        }
+        try {
+            executor.execute(() -> {
+                long start = System.nanoTime();
+                queueWaitTimer.record(start - submitTime, TimeUnit.NANOSECONDS);
+                try {
+                    task.run();
+                } finally {
+                    pending.remove(key);
+                    taskTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                }
+            });
+            return true;
+        } catch (RejectedExecutionException e) {
+            // 2.队列已满，丢弃
+            pending.remove(key);
+            rejectedCounter.increment();
+            log.debug("重建队列已满，丢弃任务 key={}", key);
+            return false;
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+}
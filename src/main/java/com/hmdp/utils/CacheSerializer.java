@@ -0,0 +1,181 @@
+package com.hmdp.utils;
+
+import com.hmdp.config.CacheProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.nio.ByteBuffer;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Function;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * 缓存值序列化入口
+ * 写入时按配置选择编码（hmdp.cache.codec），读取时根据数据头部自动识别，新旧格式可以共存
+ * 编码后超过阈值的数据用Deflate（LZ77）快速压缩，头部为压缩魔数 + 原始长度
+ * 读取时任何解码失败（长度越界、数据截断、格式错误）都返回null，由调用方按未命中重新加载
+ */
+@Slf4j
+@Component
+public class CacheSerializer {
+
+    /**
+     * 空值缓存，对应Redis中的空字符串
+     */
+    public static final byte[] NULL_MARKER = new byte[0];
+
+    private final JsonCacheCodec jsonCodec = new JsonCacheCodec();
+
+    private final BinaryCacheCodec binaryCodec = new BinaryCacheCodec();
+
+    /**
+     * 压缩数据的魔数，和JSON、二进制编码的首字节都不冲突
+     */
+    private static final byte COMPRESSED_MAGIC = (byte) 0xC7;
+
+    private static final int COMPRESSED_HEADER_LENGTH = 5;
+
+    /**
+     * 解压后的最大长度，头部中的原始长度超过时视为损坏，避免分配超大数组
+     */
+    private static final int MAX_DECOMPRESSED_LENGTH = 16 * 1024 * 1024;
+
+    private final boolean binaryEnabled;
+
+    private final boolean compressionEnabled;
+
+    private final int compressionThreshold;
+
+    private final CompressionStats compressionStats = new CompressionStats();
+
+    public CacheSerializer(CacheProperties cacheProperties) {
+        this.binaryEnabled = "binary".equalsIgnoreCase(cacheProperties.getCodec());
+        this.compressionEnabled = cacheProperties.getCompression().isEnabled();
+        this.compressionThreshold = cacheProperties.getCompression().getThresholdBytes();
+    }
+
+    public CompressionStats getCompressionStats() {
+        return compressionStats;
+    }
+
+    public static boolean isNullMarker(byte[] bytes) {
+        return bytes != null && bytes.length == 0;
+    }
+
+    public byte[] serialize(Object value) {
+        return compress(writeCodec(value).encode(value));
+    }
+
+    /**
+     * @return 格式无法识别或结构不兼容时返回null，按未命中处理
+     */
+    public <R> R deserialize(byte[] bytes, Class<R> type) {
+        return decodeSafely(bytes, b -> {
+            CacheCodec codec = readCodec(b);
+            return codec == null ? null : codec.decode(b, type);
+        });
+    }
+
+    /**
+     * 集合只用JSON编码
+     */
+    public <R> List<R> deserializeList(byte[] bytes, Class<R> elementType) {
+        return decodeSafely(bytes, b -> jsonCodec.supports(b) ? jsonCodec.decodeList(b, elementType) : null);
+    }
+
+    public byte[] serializeLogical(RedisData redisData) {
+        return compress(writeCodec(redisData.getData()).encodeLogical(redisData));
+    }
+
+    public <R> RedisData deserializeLogical(byte[] bytes, Class<R> type) {
+        return decodeSafely(bytes, b -> {
+            CacheCodec codec = readCodec(b);
+            return codec == null ? null : codec.decodeLogical(b, type);
+        });
+    }
+
+    /**
+     * 解压后交给解码器，解码失败时返回null
+     */
+    private <T> T decodeSafely(byte[] bytes, Function<byte[], T> decoder) {
+        try {
+            byte[] decompressed = decompress(bytes);
+            return decompressed == null ? null : decoder.apply(decompressed);
+        } catch (RuntimeException e) {
+            log.warn("缓存数据解码失败，按未命中处理: {}", e.toString());
+            return null;
+        }
+    }
+
+    private byte[] compress(byte[] bytes) {
+        if (!compressionEnabled || bytes.length < compressionThreshold) {
+            return bytes;
+        }
+        long begin = System.nanoTime();
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(bytes);
+            deflater.finish();
+            byte[] buffer = new byte[COMPRESSED_HEADER_LENGTH + bytes.length];
+            int length = deflater.deflate(buffer, COMPRESSED_HEADER_LENGTH, bytes.length);
+            if (!deflater.finished()) {
+                // 压缩后没有变小，保持原样
+                compressionStats.recordSkipped();
+                return bytes;
+            }
+            ByteBuffer.wrap(buffer).put(COMPRESSED_MAGIC).putInt(bytes.length);
+            byte[] result = new byte[COMPRESSED_HEADER_LENGTH + length];
+            System.arraycopy(buffer, 0, result, 0, result.length);
+            compressionStats.recordCompress(bytes.length, result.length, System.nanoTime() - begin);
+            return result;
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * @return 数据损坏（原始长度越界、解压结果和原始长度不一致）时返回null
+     */
+    private byte[] decompress(byte[] bytes) {
+        if (bytes.length < COMPRESSED_HEADER_LENGTH || bytes[0] != COMPRESSED_MAGIC) {
+            return bytes;
+        }
+        long begin = System.nanoTime();
+        int originalLength = ByteBuffer.wrap(bytes, 1, 4).getInt();
+        if (originalLength <= 0 || originalLength > MAX_DECOMPRESSED_LENGTH) {
+            return null;
+        }
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(bytes, COMPRESSED_HEADER_LENGTH, bytes.length - COMPRESSED_HEADER_LENGTH);
+            byte[] result = new byte[originalLength];
+            if (inflater.inflate(result) != originalLength || !inflater.finished()) {
+                return null;
+            }
+            compressionStats.recordDecompress(System.nanoTime() - begin);
+            return result;
+        } catch (DataFormatException e) {
+            return null;
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private CacheCodec writeCodec(Object value) {
+        // 集合只用JSON编码，和 deserializeList 对应
+        if (value instanceof Collection) {
+            return jsonCodec;
+        }
+        return binaryEnabled && value != null && binaryCodec.canEncode(value.getClass()) ? binaryCodec : jsonCodec;
+    }
+
+    private CacheCodec readCodec(byte[] bytes) {
+        if (binaryCodec.supports(bytes)) {
+            return binaryCodec;
+        }
+        return jsonCodec.supports(bytes) ? jsonCodec : null;
+    }
+}
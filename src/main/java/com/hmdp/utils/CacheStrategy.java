@@ -0,0 +1,19 @@
+package com.hmdp.utils;
+
+/**
+ * Cached 使用的缓存策略，对应 CacheClient 的三种查询方式
+ */
+public enum CacheStrategy {
+    /**
+     * 缓存穿透：缓存空值
+     */
+    PASS_THROUGH,
+    /**
+     * 缓存击穿：互斥锁重建
+     */
+    MUTEX,
+    /**
+     * 缓存击穿：逻辑过期，需要提前预热
+     */
+    LOGICAL_EXPIRE
+}
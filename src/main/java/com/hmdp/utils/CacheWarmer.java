@@ -0,0 +1,209 @@
+package com.hmdp.utils;
+
+import com.hmdp.config.CacheProperties;
+import com.hmdp.entity.Shop;
+import com.hmdp.entity.ShopType;
+import com.hmdp.service.IShopService;
+import com.hmdp.service.IShopTypeService;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.data.geo.Point;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.hmdp.utils.RedisConstants.*;
+
+/**
+ * 缓存预热：分页读取tb_shop，批量写入店铺缓存、店铺hash缓存和 shop:geo:{typeId}，同时预热店铺类型列表
+ * 启动时自动执行（hmdp.cache.warm-up.on-boot），也可以通过管理接口手动触发
+ */
+@Slf4j
+@Component
+public class CacheWarmer implements ApplicationRunner {
+
+    @Resource
+    private IShopService shopService;
+
+    @Resource
+    private IShopTypeService shopTypeService;
+
+    @Resource
+    private CacheClient cacheClient;
+
+    @Resource
+    private HashCacheClient hashCacheClient;
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Resource
+    private CacheProperties cacheProperties;
+
+    /**
+     * 负责分页读取并分发任务的线程，随容器关闭
+     */
+    private final ExecutorService warmUpCoordinator = Executors.newSingleThreadExecutor(
+            r -> new Thread(r, "cache-warm-up"));
+
+    private final AtomicBoolean running = new AtomicBoolean(false);
+
+    private volatile Progress progress = new Progress();
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (cacheProperties.getWarmUp().isOnBoot()) {
+            start();
+        }
+    }
+
+    /**
+     * 开始预热
+     * @return false 表示已经在预热中
+     */
+    public boolean start() {
+        if (!running.compareAndSet(false, true)) {
+            return false;
+        }
+        Progress p = new Progress();
+        p.setStatus("RUNNING");
+        p.setStartTime(System.currentTimeMillis());
+        progress = p;
+        warmUpCoordinator.submit(() -> {
+            try {
+                warmUp(p);
+                p.setStatus("DONE");
+            } catch (Exception e) {
+                log.error("缓存预热失败", e);
+                p.setStatus("FAILED");
+            } finally {
+                p.setEndTime(System.currentTimeMillis());
+                running.set(false);
+            }
+        });
+        return true;
+    }
+
+    public Progress getProgress() {
+        return progress;
+    }
+
+    @PreDestroy
+    private void shutdown() {
+        // 中断正在进行的预热，预热线程会取消剩余的写入任务
+        warmUpCoordinator.shutdownNow();
+    }
+
+    private void warmUp(Progress p) throws InterruptedException {
+        CacheProperties.WarmUp config = cacheProperties.getWarmUp();
+        // 1.店铺类型列表
+        List<ShopType> types = shopTypeService.query().orderByAsc("sort").list();
+        // 和 @Cached 读取时的key一致（带命名空间代数）
+        cacheClient.set(cacheClient.buildKey(CACHE_TYPE_KEY, CACHE_TYPE_LIST), types);
+
+        // 2.店铺：按id游标分页，避免深分页
+        p.setTotal(shopService.count());
+        int threads = config.getThreads();
+        // 有界队列 + 调用者执行，读库速度超过写Redis速度时自然限流
+        ThreadPoolExecutor workers = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(threads * 2), new ThreadPoolExecutor.CallerRunsPolicy());
+        boolean finished = false;
+        try {
+            long lastId = 0;
+            while (true) {
+                List<Shop> shops = shopService.query()
+                        .gt("id", lastId)
+                        .orderByAsc("id")
+                        .last("LIMIT " + config.getPageSize())
+                        .list();
+                if (shops.isEmpty()) {
+                    break;
+                }
+                lastId = shops.get(shops.size() - 1).getId();
+                workers.execute(() -> writePage(shops, p));
+            }
+        } finally {
+            workers.shutdown();
+            try {
+                finished = workers.awaitTermination(10, TimeUnit.MINUTES);
+            } finally {
+                if (!finished) {
+                    // 超时或被中断，取消剩余的写入任务
+                    workers.shutdownNow();
+                }
+            }
+        }
+        if (!finished) {
+            throw new IllegalStateException("缓存预热超时，剩余的写入任务已取消");
+        }
+        log.info("缓存预热完成，共{}个店铺，失败{}个，耗时{}ms",
+                p.getProcessed().get(), p.getFailed().get(), System.currentTimeMillis() - p.getStartTime());
+    }
+
+    private void writePage(List<Shop> shops, Progress p) {
+        try {
+            // 店铺缓存
+            // 带版本号写入：读库之后店铺被更新时，不会用这一页的旧数据覆盖新缓存
+            cacheClient.setBatch(CACHE_SHOP_KEY, shops, Shop::getId, Shop::getVersion, CACHE_SHOP_TTL, TimeUnit.MINUTES);
+            // 店铺hash缓存（列表投影读取）
+            hashCacheClient.putAll(CACHE_SHOP_HASH_KEY, shops, Shop::getId, Shop::getVersion, CACHE_SHOP_TTL, TimeUnit.MINUTES);
+            // 店铺坐标 GEOADD shop:geo:{typeId} x y id
+            stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                geoAdd(connection, shops);
+                return null;
+            });
+            p.getProcessed().addAndGet(shops.size());
+        } catch (Exception e) {
+            log.error("缓存预热写入失败", e);
+            p.getFailed().addAndGet(shops.size());
+        }
+    }
+
+    private void geoAdd(RedisConnection connection, List<Shop> shops) {
+        for (Shop shop : shops) {
+            if (shop.getX() == null || shop.getY() == null || shop.getTypeId() == null) {
+                continue;
+            }
+            connection.geoAdd((SHOP_GEO_KEY + shop.getTypeId()).getBytes(StandardCharsets.UTF_8),
+                    new Point(shop.getX(), shop.getY()),
+                    shop.getId().toString().getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    @Data
+    public static class Progress {
+        /**
+         * IDLE / RUNNING / DONE / FAILED
+         */
+        private String status = "IDLE";
+        private long total;
+        private AtomicLong processed = new AtomicLong();
+        private AtomicLong failed = new AtomicLong();
+        private long startTime;
+        private long endTime;
+
+        /**
+         * 吞吐量（店铺/秒）
+         */
+        public double getThroughput() {
+            long end = endTime > 0 ? endTime : System.currentTimeMillis();
+            long elapsed = end - startTime;
+            return elapsed <= 0 ? 0 : processed.get() * 1000.0 / elapsed;
+        }
+    }
+}
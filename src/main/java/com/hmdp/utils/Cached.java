@@ -0,0 +1,46 @@
+package com.hmdp.utils;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 方法返回值缓存，由 CacheAspect 交给 CacheClient 处理
+ * 缓存key = prefix + key表达式的值，方法本身就是dbFallback
+ * 返回值会被多个请求共享（本地缓存），调用方不要修改返回的对象
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface Cached {
+
+    /**
+     * key前缀，例如 RedisConstants.CACHE_SHOP_KEY
+     */
+    String prefix();
+
+    /**
+     * SpEL表达式，可以用参数名或 #p0 引用参数，为空表示key只有前缀
+     */
+    String key() default "";
+
+    /**
+     * 缓存策略，返回集合的方法只支持缓存穿透
+     */
+    CacheStrategy strategy() default CacheStrategy.PASS_THROUGH;
+
+    /**
+     * 有效期，小于等于0表示不过期（逻辑过期策略下是逻辑有效期）
+     */
+    long ttl() default 30;
+
+    TimeUnit unit() default TimeUnit.MINUTES;
+
+    /**
+     * 返回值是集合时的元素类型
+     */
+    Class<?> elementType() default Object.class;
+}
@@ -0,0 +1,73 @@
+package com.hmdp.utils;
+
+import lombok.Data;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 缓存压缩统计
+ */
+public class CompressionStats {
+
+    private final LongAdder compressedCount = new LongAdder();
+    private final LongAdder skippedCount = new LongAdder();
+    private final LongAdder originalBytes = new LongAdder();
+    private final LongAdder compressedBytes = new LongAdder();
+    private final LongAdder compressNanos = new LongAdder();
+    private final LongAdder decompressedCount = new LongAdder();
+    private final LongAdder decompressNanos = new LongAdder();
+
+    void recordCompress(int before, int after, long nanos) {
+        compressedCount.increment();
+        originalBytes.add(before);
+        compressedBytes.add(after);
+        compressNanos.add(nanos);
+    }
+
+    void recordSkipped() {
+        skippedCount.increment();
+    }
+
+    void recordDecompress(long nanos) {
+        decompressedCount.increment();
+        decompressNanos.add(nanos);
+    }
+
+    public Snapshot snapshot() {
+        Snapshot snapshot = new Snapshot();
+        long count = compressedCount.sum();
+        long before = originalBytes.sum();
+        long after = compressedBytes.sum();
+        long decompressed = decompressedCount.sum();
+        snapshot.setCompressedCount(count);
+        snapshot.setSkippedCount(skippedCount.sum());
+        snapshot.setOriginalBytes(before);
+        snapshot.setCompressedBytes(after);
+        snapshot.setRatio(before == 0 ? 1.0 : (double) after / before);
+        snapshot.setAvgCompressMicros(count == 0 ? 0 : compressNanos.sum() / count / 1000.0);
+        snapshot.setDecompressedCount(decompressed);
+        snapshot.setAvgDecompressMicros(decompressed == 0 ? 0 : decompressNanos.sum() / decompressed / 1000.0);
+        return snapshot;
+    }
+
+    @Data
+    public static class Snapshot {
+        /**
+         * 压缩的条数
+         */
+        private long compressedCount;
+        /**
+         * 因为太小或压缩后没有变小而未压缩的条数
+         */
+        private long skippedCount;
+        private long originalBytes;
+        private long compressedBytes;
+        /**
+         * 压缩后/压缩前
+         */
+        private double ratio;
+        private double avgCompressMicros;
+        private long decompressedCount;
+        private double avgDecompressMicros;
+    }
+}
@@ -0,0 +1,54 @@
+package com.hmdp.utils;
+
+import com.hmdp.config.CacheProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * 缓存未命中回源数据库的舱壁：限制同时查库的并发数
+ * Redis故障时所有读请求都会回源，没有限制会把数据库一起压垮
+ */
+@Component
+public class DbBulkhead {
+
+    private final Semaphore permits;
+
+    private final long maxWaitMillis;
+
+    private final Counter rejectedCounter;
+
+    public DbBulkhead(CacheProperties cacheProperties, MeterRegistry registry) {
+        CacheProperties.Bulkhead config = cacheProperties.getBulkhead();
+        this.permits = new Semaphore(config.getMaxConcurrent());
+        this.maxWaitMillis = config.getMaxWaitMillis();
+        this.rejectedCounter = registry.counter("cache.db.bulkhead.rejected");
+        registry.gauge("cache.db.bulkhead.available", permits, Semaphore::availablePermits);
+    }
+
+    /**
+     * 在并发限制内执行，等待超时抛出 BulkheadFullException
+     */
+    public <T> T execute(Supplier<T> action) {
+        boolean acquired;
+        try {
+            acquired = permits.tryAcquire(maxWaitMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            acquired = false;
+        }
+        if (!acquired) {
+            rejectedCounter.increment();
+            throw new BulkheadFullException("数据库繁忙，请稍后重试");
+        }
+        try {
+            return action.get();
+        } finally {
+            permits.release();
+        }
+    }
+}
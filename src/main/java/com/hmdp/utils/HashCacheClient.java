@@ -0,0 +1,271 @@
+package com.hmdp.utils;
+
+import cn.hutool.core.bean.BeanUtil;
+import cn.hutool.core.bean.copier.CopyOptions;
+import cn.hutool.core.date.LocalDateTimeUtil;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.ReturnType;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import static com.hmdp.utils.RedisConstants.CACHE_NULL_TTL;
+import static com.hmdp.utils.RedisConstants.CACHE_VERSION_SUFFIX;
+import static com.hmdp.utils.RedisConstants.CACHE_VERSION_TTL;
+
+/**
+ * 按字段存储的hash缓存：一个属性对应一个field
+ * 读取时用HMGET只取需要的字段，更新时只改变化的字段，不需要整体删除重建
+ * 数据库中不存在的id写入只有 NULL_FIELD 字段的hash作为空值缓存
+ */
+@Slf4j
+@Component
+public class HashCacheClient {
+
+    /**
+     * 空值缓存的标记字段
+     */
+    public static final String NULL_FIELD = "_null";
+
+    private static final byte[] RAW_NULL_FIELD = NULL_FIELD.getBytes(StandardCharsets.UTF_8);
+
+    private static final DefaultRedisScript<Long> PATCH_SCRIPT;
+
+    /**
+     * 在管道中用EVAL执行，预先读出脚本内容
+     */
+    private static final byte[] VERSIONED_SET_SCRIPT;
+
+    static {
+        PATCH_SCRIPT = new DefaultRedisScript<>();
+        PATCH_SCRIPT.setLocation(new ClassPathResource("hash_patch.lua"));
+        PATCH_SCRIPT.setResultType(Long.class);
+        DefaultRedisScript<Long> versionedSet = new DefaultRedisScript<>();
+        versionedSet.setLocation(new ClassPathResource("hash_versioned_set.lua"));
+        VERSIONED_SET_SCRIPT = versionedSet.getScriptAsString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Resource
+    private CacheExpiryPolicy expiryPolicy;
+
+    @Resource
+    private CacheNamespace cacheNamespace;
+
+    @Resource
+    private RedisCircuitBreaker redisCircuitBreaker;
+
+    @Resource
+    private DbBulkhead dbBulkhead;
+
+    @Resource
+    private HotKeyDetector hotKeyDetector;
+
+    /**
+     * 把对象的所有非空属性转换为hash的字段
+     */
+    public static Map<String, String> toFields(Object value) {
+        Map<String, Object> map = BeanUtil.beanToMap(value, false, true);
+        Map<String, String> fields = new LinkedHashMap<>(map.size());
+        map.forEach((field, v) -> fields.put(field, toFieldValue(v)));
+        return fields;
+    }
+
+    private static String toFieldValue(Object value) {
+        if (value instanceof LocalDateTime) {
+            return LocalDateTimeUtil.formatNormal((LocalDateTime) value);
+        }
+        return String.valueOf(value);
+    }
+
+    /**
+     * 管道批量写入，每个对象一个hash，带版本号整体替换（见 hash_versioned_set.lua），不会覆盖更新的版本
+     * 失败时抛出异常
+     * @param versionGetter 从数据中取版本号，可以为空
+     */
+    public <R, ID> void putAll(String keyPrefix, Collection<R> values, Function<R, ID> idGetter,
+                               Function<R, Long> versionGetter, Long time, TimeUnit unit) {
+        long ttlSeconds = unit.toSeconds(time);
+        String prefix = cacheNamespace.prefix(keyPrefix);
+        redisCircuitBreaker.callBulk(() -> stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (R value : values) {
+                String key = prefix + idGetter.apply(value);
+                versionedSet(connection, key, value, versionGetter, ttlSeconds);
+            }
+            return null;
+        }));
+    }
+
+    /**
+     * 批量投影查询：管道中每个id一次HMGET，只取fields中的字段
+     * 未命中的id一次性查库（受舱壁限制），带版本号写入hash（见 hash_versioned_set.lua），不存在的写入空值
+     * Redis熔断时直接查库，不回写。结果按传入顺序返回，只填充fields中的属性
+     * @param dbFallback 根据id集合批量查询数据库，例如 listByIds
+     * @param versionGetter 从数据中取版本号，重建时拒绝比缓存中旧的数据
+     */
+    public <R, ID> List<R> multiGetFields(
+            String keyPrefix, List<ID> ids, Class<R> type, List<String> fields,
+            Function<Collection<ID>, List<R>> dbFallback, Function<R, ID> idGetter, Function<R, Long> versionGetter,
+            Long time, TimeUnit unit) {
+        if (ids.isEmpty()) {
+            return new ArrayList<>();
+        }
+        // 1.管道HMGET，最后多取一个空值标记字段
+        byte[][] rawFields = new byte[fields.size() + 1][];
+        for (int i = 0; i < fields.size(); i++) {
+            rawFields[i] = fields.get(i).getBytes(StandardCharsets.UTF_8);
+        }
+        rawFields[fields.size()] = RAW_NULL_FIELD;
+        String prefix = cacheNamespace.prefix(keyPrefix);
+        for (ID id : ids) {
+            // 只统计频率，投影结果不提升到本地缓存
+            hotKeyDetector.record(prefix + id);
+        }
+        List<Object> rows = !redisCircuitBreaker.isAvailable() ? null : redisCircuitBreaker.executeBulk(() ->
+                stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                    for (ID id : ids) {
+                        connection.hMGet((prefix + id).getBytes(StandardCharsets.UTF_8), rawFields);
+                    }
+                    return null;
+                }), () -> null);
+        // 2.解析命中的，记录未命中的；Redis不可用时全部按未命中处理
+        Map<String, R> found = new HashMap<>(ids.size());
+        List<ID> misses = new ArrayList<>();
+        for (int i = 0; i < ids.size(); i++) {
+            List<?> values = rows == null ? null : (List<?>) rows.get(i);
+            if (values != null && values.size() > fields.size() && values.get(fields.size()) != null) {
+                // 2.1.空值缓存，直接跳过
+                continue;
+            }
+            Map<String, Object> map = toMap(fields, values);
+            if (map.isEmpty()) {
+                misses.add(ids.get(i));
+                continue;
+            }
+            found.put(String.valueOf(ids.get(i)), BeanUtil.toBean(map, type, CopyOptions.create().ignoreError()));
+        }
+        // 3.未命中的一次性查库，带版本号写入hash，再按字段投影
+        if (!misses.isEmpty()) {
+            List<R> loaded = dbBulkhead.execute(() -> dbFallback.apply(misses));
+            Map<String, R> loadedMap = new HashMap<>(misses.size());
+            if (loaded != null) {
+                for (R r : loaded) {
+                    loadedMap.put(String.valueOf(idGetter.apply(r)), r);
+                    found.put(String.valueOf(idGetter.apply(r)), project(r, type, fields));
+                }
+            }
+            if (rows != null) {
+                rebuild(prefix, misses, loadedMap, versionGetter, unit.toSeconds(time));
+            }
+        }
+        // 4.按传入顺序组装结果
+        List<R> result = new ArrayList<>(found.size());
+        for (ID id : ids) {
+            R r = found.get(String.valueOf(id));
+            if (r != null) {
+                result.add(r);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 管道回写未命中的hash：存在的带版本号整体替换，不存在的写入空值标记
+     */
+    private <R, ID> void rebuild(String prefix, List<ID> misses, Map<String, R> loadedMap,
+                                 Function<R, Long> versionGetter, long ttlSeconds) {
+        long nullTtlSeconds = TimeUnit.MINUTES.toSeconds(CACHE_NULL_TTL);
+        redisCircuitBreaker.runBulk(() -> stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (ID id : misses) {
+                String key = prefix + id;
+                byte[] rawKey = key.getBytes(StandardCharsets.UTF_8);
+                R r = loadedMap.get(String.valueOf(id));
+                if (r == null) {
+                    // 数据库也不存在，写入空值
+                    connection.del(rawKey);
+                    connection.hSet(rawKey, RAW_NULL_FIELD, "1".getBytes(StandardCharsets.UTF_8));
+                    connection.expire(rawKey, expiryPolicy.ttlSeconds(key, nullTtlSeconds));
+                    continue;
+                }
+                versionedSet(connection, key, r, versionGetter, ttlSeconds);
+            }
+            return null;
+        }));
+    }
+
+    /**
+     * 在管道中带版本号整体替换一个hash
+     */
+    private <R> void versionedSet(RedisConnection connection, String key, R value,
+                                  Function<R, Long> versionGetter, long ttlSeconds) {
+        Long version = versionGetter == null ? null : versionGetter.apply(value);
+        Map<String, String> fields = toFields(value);
+        byte[][] keysAndArgs = new byte[4 + fields.size() * 2][];
+        keysAndArgs[0] = key.getBytes(StandardCharsets.UTF_8);
+        keysAndArgs[1] = (key + CACHE_VERSION_SUFFIX).getBytes(StandardCharsets.UTF_8);
+        keysAndArgs[2] = (version == null ? "" : version.toString()).getBytes(StandardCharsets.UTF_8);
+        keysAndArgs[3] = String.valueOf(expiryPolicy.ttlSeconds(key, ttlSeconds)).getBytes(StandardCharsets.UTF_8);
+        int i = 4;
+        for (Map.Entry<String, String> field : fields.entrySet()) {
+            keysAndArgs[i++] = field.getKey().getBytes(StandardCharsets.UTF_8);
+            keysAndArgs[i++] = field.getValue().getBytes(StandardCharsets.UTF_8);
+        }
+        connection.eval(VERSIONED_SET_SCRIPT, ReturnType.INTEGER, 2, keysAndArgs);
+    }
+
+    /**
+     * 只更新hash中已有的缓存，缓存不存在时不写入（不会产生只有部分字段的hash）
+     * 带版本号时比缓存中旧的更新会被丢弃，缓存不存在时留下版本标记（见 hash_patch.lua）
+     * @param version 数据更新后的版本号，可以为空
+     * @return 是否更新
+     */
+    public boolean patch(String key, Map<String, String> fields, Long version) {
+        if (fields.isEmpty()) {
+            return false;
+        }
+        List<String> args = new ArrayList<>(fields.size() * 2 + 2);
+        args.add(version == null ? "" : version.toString());
+        args.add(String.valueOf(TimeUnit.MINUTES.toSeconds(CACHE_VERSION_TTL)));
+        fields.forEach((field, value) -> {
+            args.add(field);
+            args.add(value);
+        });
+        Long result = stringRedisTemplate.execute(PATCH_SCRIPT, Arrays.asList(key, key + CACHE_VERSION_SUFFIX),
+                args.toArray());
+        return result != null && result == 1L;
+    }
+
+    private static Map<String, Object> toMap(List<String> fields, List<?> values) {
+        Map<String, Object> map = new HashMap<>(fields.size());
+        if (values == null) {
+            return map;
+        }
+        for (int i = 0; i < fields.size() && i < values.size(); i++) {
+            if (values.get(i) != null) {
+                map.put(fields.get(i), values.get(i));
+            }
+        }
+        return map;
+    }
+
+    private static <R> R project(R value, Class<R> type, List<String> fields) {
+        Map<String, Object> map = BeanUtil.beanToMap(value);
+        Map<String, Object> projected = new HashMap<>(fields.size());
+        for (String field : fields) {
+            projected.put(field, map.get(field));
+        }
+        return BeanUtil.toBean(projected, type, CopyOptions.create().ignoreError());
+    }
+}
@@ -0,0 +1,148 @@
+package com.hmdp.utils;
+
+import cn.hutool.core.lang.hash.MurmurHash;
+import cn.hutool.core.util.StrUtil;
+import com.hmdp.config.CacheProperties;
+import lombok.Data;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import static com.hmdp.utils.RedisConstants.LOGIN_USER_KEY;
+
+/**
+ * 热点key探测
+ * 用Count-Min Sketch统计访问频率，定时把所有计数减半（衰减），频率超过阈值的key视为热点
+ * 除了CacheClient，HashCacheClient和直接用StringRedisTemplate读取的高频路径也要记录：
+ * 登录token和点赞状态成为热点后以较短的有效期提升到本地缓存（LocalCache.putHot），投影查询只统计
+ */
+@Component
+public class HotKeyDetector {
+
+    private final boolean enabled;
+    private final int depth;
+    private final int width;
+    private final int threshold;
+    private final int maxHotKeys;
+
+    /**
+     * depth行 * width列的计数器，按行展开
+     */
+    private final AtomicIntegerArray counters;
+
+    /**
+     * 当前热点key -> 最近一次估算的访问次数
+     */
+    private final Map<String, Integer> hotKeys = new ConcurrentHashMap<>();
+
+    private final ScheduledExecutorService decayExecutor = Executors.newSingleThreadScheduledExecutor();
+
+    public HotKeyDetector(CacheProperties cacheProperties) {
+        CacheProperties.HotKey config = cacheProperties.getHotKey();
+        this.enabled = config.isEnabled();
+        this.depth = config.getDepth();
+        this.width = config.getWidth();
+        this.threshold = config.getThreshold();
+        this.maxHotKeys = config.getMaxHotKeys();
+        this.counters = new AtomicIntegerArray(depth * width);
+        long period = config.getDecaySeconds();
+        decayExecutor.scheduleAtFixedRate(this::decay, period, period, TimeUnit.SECONDS);
+    }
+
+    /**
+     * 记录一次访问
+     * @return 是否是热点key
+     */
+    public boolean record(String key) {
+        if (!enabled) {
+            return false;
+        }
+        long[] hash = MurmurHash.hash128(key);
+        int min = Integer.MAX_VALUE;
+        for (int i = 0; i < depth; i++) {
+            int count = counters.incrementAndGet(index(hash, i));
+            min = Math.min(min, count);
+        }
+        if (min >= threshold) {
+            // 热点key已满时不再加入，也不提升到本地缓存
+            if (hotKeys.size() < maxHotKeys || hotKeys.containsKey(key)) {
+                hotKeys.put(key, min);
+                return true;
+            }
+            return false;
+        }
+        return hotKeys.containsKey(key);
+    }
+
+    public boolean isHot(String key) {
+        return hotKeys.containsKey(key);
+    }
+
+    /**
+     * 当前热点key，按访问频率从高到低
+     */
+    public List<HotKey> hotKeys() {
+        List<HotKey> list = new ArrayList<>(hotKeys.size());
+        hotKeys.forEach((key, count) -> {
+            HotKey hotKey = new HotKey();
+            // 登录token是凭证，只显示前几位
+            hotKey.setKey(key.startsWith(LOGIN_USER_KEY)
+                    ? StrUtil.subPre(key, LOGIN_USER_KEY.length() + 8) + "*" : key);
+            hotKey.setCount(count);
+            list.add(hotKey);
+        });
+        list.sort((a, b) -> Integer.compare(b.getCount(), a.getCount()));
+        return list;
+    }
+
+    /**
+     * 计数减半；低于阈值一半的热点key降级（留出滞后区间，避免反复升降）
+     */
+    void decay() {
+        for (int i = 0; i < counters.length(); i++) {
+            // 原子地减半，不丢失并发的计数
+            counters.updateAndGet(i, count -> count >>> 1);
+        }
+        hotKeys.replaceAll((key, count) -> estimate(key));
+        hotKeys.values().removeIf(count -> count < threshold / 2);
+    }
+
+    private int estimate(String key) {
+        long[] hash = MurmurHash.hash128(key);
+        int min = Integer.MAX_VALUE;
+        for (int i = 0; i < depth; i++) {
+            min = Math.min(min, counters.get(index(hash, i)));
+        }
+        return min;
+    }
+
+    /**
+     * 第i行的位置：h1 + i*h2
+     */
+    private int index(long[] hash, int row) {
+        long combined = hash[0] + row * hash[1];
+        return row * width + (int) ((combined & Long.MAX_VALUE) % width);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        decayExecutor.shutdownNow();
+    }
+
+    @Data
+    public static class HotKey {
+        private String key;
+        /**
+         * 衰减后的访问次数估算值
+         */
+        private int count;
+    }
+}
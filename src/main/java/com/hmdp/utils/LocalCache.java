@@ -0,0 +1,122 @@
+package com.hmdp.utils;
+
+import cn.hutool.cache.CacheUtil;
+import cn.hutool.cache.impl.CacheObj;
+import cn.hutool.cache.impl.LRUCache;
+import com.hmdp.config.CacheProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 本地一级缓存，位于Redis之前
+ * 按容量LRU淘汰 + 按写入时间过期，跨节点一致性依赖Redis发布订阅的失效广播
+ * 关闭本地缓存时，仍然会保存自动探测到的热点key（有效期更短）
+ * 另外保留一份有效期更长的过期副本，只在Redis熔断时使用
+ */
+@Component
+public class LocalCache {
+
+    /**
+     * 空值占位，对应Redis中的空字符串
+     */
+    public static final Object NULL_VALUE = new Object();
+
+    private final boolean enabled;
+
+    private final long hotTtlMillis;
+
+    private final LRUCache<String, Object> cache;
+
+    private final LRUCache<String, Object> staleCache;
+
+    public LocalCache(CacheProperties cacheProperties) {
+        CacheProperties.Local local = cacheProperties.getLocal();
+        this.enabled = local.isEnabled();
+        this.hotTtlMillis = TimeUnit.SECONDS.toMillis(cacheProperties.getHotKey().getTtlSeconds());
+        this.cache = CacheUtil.newLRUCache(local.getCapacity(), TimeUnit.SECONDS.toMillis(local.getTtlSeconds()));
+        this.staleCache = CacheUtil.newLRUCache(local.getCapacity(), TimeUnit.SECONDS.toMillis(local.getStaleTtlSeconds()));
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public Object get(String key) {
+        // 不刷新访问时间，保证按写入时间过期
+        return cache.get(key, false);
+    }
+
+    public void put(String key, Object value) {
+        put(key, value, false);
+    }
+
+    /**
+     * @param hot 是否是热点key；关闭本地缓存时，热点key仍以较短的有效期保存到本地
+     */
+    public void put(String key, Object value, boolean hot) {
+        Object v = value == null ? NULL_VALUE : value;
+        if (enabled) {
+            cache.put(key, v);
+        } else if (hot) {
+            cache.put(key, v, hotTtlMillis);
+        }
+        staleCache.put(key, v);
+    }
+
+    /**
+     * 只以热点key的有效期保存到本地，不保存过期副本
+     * 用于直接读取Redis的高频路径（登录token、点赞状态），数据变化时其它节点最多延迟这么久
+     */
+    public void putHot(String key, Object value) {
+        cache.put(key, value == null ? NULL_VALUE : value, hotTtlMillis);
+    }
+
+    /**
+     * 只保存过期副本
+     */
+    public void putStale(String key, Object value) {
+        staleCache.put(key, value == null ? NULL_VALUE : value);
+    }
+
+    /**
+     * 读取过期副本，Redis熔断时使用，可能不是最新数据
+     */
+    public Object getStale(String key) {
+        return staleCache.get(key, false);
+    }
+
+    public void invalidate(String key) {
+        cache.remove(key);
+        staleCache.remove(key);
+    }
+
+    public int size() {
+        return cache.size();
+    }
+
+    /**
+     * 遍历未过期的条目，用于保存快照
+     * @param stale true遍历过期副本，false遍历本地缓存
+     */
+    public void forEach(boolean stale, EntryVisitor visitor) {
+        Iterator<CacheObj<String, Object>> iterator = (stale ? staleCache : cache).cacheObjIterator();
+        while (iterator.hasNext()) {
+            CacheObj<String, Object> obj = iterator.next();
+            // 读取时不刷新访问时间，最后访问时间就是写入时间
+            visitor.visit(obj.getKey(), obj.getValue(), obj.getLastAccess() + obj.getTtl());
+        }
+    }
+
+    /**
+     * 从快照恢复一个条目，只保留剩余的有效期
+     */
+    public void restore(String key, Object value, long ttlMillis, boolean stale) {
+        (stale ? staleCache : cache).put(key, value, ttlMillis);
+    }
+
+    public interface EntryVisitor {
+        void visit(String key, Object value, long expireAtMillis);
+    }
+}
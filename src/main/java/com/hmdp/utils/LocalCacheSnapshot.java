@@ -0,0 +1,312 @@
+package com.hmdp.utils;
+
+import com.hmdp.config.CacheProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.util.ClassUtils;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * 本地缓存快照，重启后不用从零开始预热热点数据
+ * 定期把指定前缀的本地缓存和过期副本写入内存映射文件，启动时（接收请求之前）加载
+ * 文件头记录生成时间和CRC32校验和，校验失败或超过最长有效时间的快照直接丢弃
+ * 每个条目只恢复剩余的有效期，和没有重启时的过期时间一致
+ */
+@Slf4j
+@Component
+public class LocalCacheSnapshot {
+
+    private static final int MAGIC = 0x484D4C43;
+
+    private static final int VERSION = 1;
+
+    /**
+     * 文件头：魔数、版本、生成时间、条目数、数据长度、校验和
+     */
+    private static final int HEADER_BYTES = 4 + 4 + 8 + 4 + 4 + 8;
+
+    private static final byte KIND_NULL = 0;
+    private static final byte KIND_OBJECT = 1;
+    private static final byte KIND_LIST = 2;
+    private static final byte KIND_LOGICAL = 3;
+
+    /**
+     * 只恢复本项目的类型
+     */
+    private static final String TYPE_PACKAGE = "com.hmdp.";
+
+    private final LocalCache localCache;
+
+    private final CacheSerializer cacheSerializer;
+
+    private final CacheProperties.Snapshot config;
+
+    private ScheduledExecutorService snapshotExecutor;
+
+    public LocalCacheSnapshot(LocalCache localCache, CacheSerializer cacheSerializer, CacheProperties cacheProperties) {
+        this.localCache = localCache;
+        this.cacheSerializer = cacheSerializer;
+        this.config = cacheProperties.getSnapshot();
+    }
+
+    @PostConstruct
+    private void init() {
+        if (!config.isEnabled()) {
+            return;
+        }
+        // 1.启动时加载快照
+        load();
+        // 2.定期保存快照
+        snapshotExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "local-cache-snapshot");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long interval = config.getIntervalSeconds();
+        snapshotExecutor.scheduleWithFixedDelay(this::save, interval, interval, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    private void destroy() {
+        if (snapshotExecutor == null) {
+            return;
+        }
+        snapshotExecutor.shutdownNow();
+        // 关闭前保存最新的快照
+        save();
+    }
+
+    /**
+     * 保存快照：先写临时文件，再原子替换；失败时删除临时文件，正式文件保持上一次的完整快照
+     * 定时保存和关闭时保存可能同时发生，共用同一个临时文件，需要串行
+     */
+    public synchronized void save() {
+        Path tmp = Paths.get(config.getPath() + ".tmp");
+        try {
+            long begin = System.currentTimeMillis();
+            ByteArrayOutputStream payload = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(payload);
+            int[] count = {0};
+            for (boolean stale : new boolean[]{false, true}) {
+                localCache.forEach(stale, (key, value, expireAt) -> {
+                    if (payload.size() >= config.getMaxBytes() || !matches(key)) {
+                        return;
+                    }
+                    try {
+                        if (writeEntry(out, stale, key, value, expireAt)) {
+                            count[0]++;
+                        }
+                    } catch (Exception e) {
+                        log.debug("本地缓存条目无法保存, key={}", key, e);
+                    }
+                });
+            }
+            out.flush();
+            byte[] data = payload.toByteArray();
+            CRC32 crc = new CRC32();
+            crc.update(data);
+
+            Path path = Paths.get(config.getPath());
+            Path parent = path.toAbsolutePath().getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+            Files.deleteIfExists(tmp);
+            try (FileChannel channel = FileChannel.open(tmp,
+                    StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTES + data.length);
+                buffer.putInt(MAGIC).putInt(VERSION).putLong(System.currentTimeMillis())
+                        .putInt(count[0]).putInt(data.length).putLong(crc.getValue());
+                buffer.put(data);
+                buffer.force();
+            }
+            try {
+                Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING);
+            }
+            log.debug("本地缓存快照已保存, entries={}, bytes={}, cost={}ms",
+                    count[0], data.length, System.currentTimeMillis() - begin);
+        } catch (Exception e) {
+            log.warn("保存本地缓存快照失败, path={}", config.getPath(), e);
+            try {
+                Files.deleteIfExists(tmp);
+            } catch (IOException ex) {
+                log.warn("删除本地缓存快照临时文件失败, path={}", tmp, ex);
+            }
+        }
+    }
+
+    /**
+     * 加载快照，任何校验不通过都放弃整个快照
+     */
+    public void load() {
+        Path path = Paths.get(config.getPath());
+        if (!Files.isRegularFile(path)) {
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_BYTES) {
+                log.warn("本地缓存快照不完整，忽略, path={}", path);
+                return;
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            // 1.校验文件头
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+                log.warn("本地缓存快照格式不兼容，忽略, path={}", path);
+                return;
+            }
+            long createdAt = buffer.getLong();
+            int count = buffer.getInt();
+            int length = buffer.getInt();
+            long checksum = buffer.getLong();
+            long age = System.currentTimeMillis() - createdAt;
+            if (age < 0 || age > TimeUnit.SECONDS.toMillis(config.getMaxAgeSeconds())) {
+                log.info("本地缓存快照已过期，忽略, path={}, age={}ms", path, age);
+                return;
+            }
+            if (length != size - HEADER_BYTES) {
+                log.warn("本地缓存快照长度不一致，忽略, path={}", path);
+                return;
+            }
+            // 2.校验数据
+            ByteBuffer data = ((ByteBuffer) buffer).slice();
+            CRC32 crc = new CRC32();
+            crc.update(data.duplicate());
+            if (crc.getValue() != checksum) {
+                log.warn("本地缓存快照校验失败，忽略, path={}", path);
+                return;
+            }
+            // 3.逐条恢复未过期的条目
+            long now = System.currentTimeMillis();
+            int restored = 0;
+            for (int i = 0; i < count; i++) {
+                if (readEntry(data, now)) {
+                    restored++;
+                }
+            }
+            log.info("本地缓存快照已加载, path={}, age={}ms, entries={}, restored={}", path, age, count, restored);
+        } catch (Exception e) {
+            log.warn("加载本地缓存快照失败, path={}", path, e);
+        }
+    }
+
+    private boolean matches(String key) {
+        List<String> prefixes = config.getPrefixes();
+        for (String prefix : prefixes) {
+            if (key.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean writeEntry(DataOutputStream out, boolean stale, String key, Object value, long expireAt)
+            throws IOException {
+        byte kind;
+        Object typed = value;
+        byte[] bytes;
+        if (value == LocalCache.NULL_VALUE) {
+            kind = KIND_NULL;
+            typed = null;
+            bytes = new byte[0];
+        } else if (value instanceof RedisData) {
+            kind = KIND_LOGICAL;
+            typed = ((RedisData) value).getData();
+            bytes = typed == null ? null : cacheSerializer.serializeLogical((RedisData) value);
+        } else if (value instanceof List) {
+            kind = KIND_LIST;
+            List<?> list = (List<?>) value;
+            if (list.isEmpty()) {
+                return false;
+            }
+            typed = list.get(0);
+            bytes = cacheSerializer.serialize(value);
+        } else {
+            kind = KIND_OBJECT;
+            bytes = cacheSerializer.serialize(value);
+        }
+        if (bytes == null || (typed != null && !typed.getClass().getName().startsWith(TYPE_PACKAGE))) {
+            return false;
+        }
+        out.writeBoolean(stale);
+        out.writeByte(kind);
+        writeString(out, key);
+        writeString(out, kind == KIND_NULL ? "" : typed.getClass().getName());
+        out.writeLong(expireAt);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+        return true;
+    }
+
+    private boolean readEntry(ByteBuffer data, long now) {
+        boolean stale = data.get() != 0;
+        byte kind = data.get();
+        String key = readString(data);
+        String typeName = readString(data);
+        long expireAt = data.getLong();
+        byte[] bytes = new byte[data.getInt()];
+        data.get(bytes);
+        long ttl = expireAt - now;
+        if (ttl <= 0 || (kind != KIND_NULL && !typeName.startsWith(TYPE_PACKAGE))) {
+            return false;
+        }
+        Object value;
+        try {
+            value = kind == KIND_NULL ? LocalCache.NULL_VALUE : decode(kind, typeName, bytes);
+        } catch (Exception e) {
+            // 类型已经不存在或结构不兼容，跳过这一条
+            log.debug("本地缓存快照条目无法恢复, key={}", key, e);
+            return false;
+        }
+        if (value == null) {
+            return false;
+        }
+        localCache.restore(key, value, ttl, stale);
+        return true;
+    }
+
+    private Object decode(byte kind, String typeName, byte[] bytes) throws ClassNotFoundException {
+        Class<?> type = ClassUtils.forName(typeName, ClassUtils.getDefaultClassLoader());
+        if (kind == KIND_LOGICAL) {
+            return cacheSerializer.deserializeLogical(bytes, type);
+        }
+        if (kind == KIND_LIST) {
+            return cacheSerializer.deserializeList(bytes, type);
+        }
+        return cacheSerializer.deserialize(bytes, type);
+    }
+
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer data) {
+        byte[] bytes = new byte[data.getInt()];
+        data.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
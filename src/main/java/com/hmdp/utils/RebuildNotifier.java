@@ -0,0 +1,59 @@
+package com.hmdp.utils;
+
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * 缓存重建完成通知
+ * 抢不到分布式锁的节点在这里等待，持有锁的节点重建完成后通过Redis发布订阅唤醒，代替休眠轮询
+ */
+@Component
+public class RebuildNotifier {
+
+    private final ConcurrentHashMap<String, CompletableFuture<Void>> waiters = new ConcurrentHashMap<>();
+
+    /**
+     * 登记等待，必须在再次检查缓存之前调用，避免错过通知
+     */
+    public CompletableFuture<Void> register(String key) {
+        return waiters.computeIfAbsent(key, k -> new CompletableFuture<>());
+    }
+
+    /**
+     * 等待重建完成或超时
+     */
+    public void await(String key, CompletableFuture<Void> signal, long timeout, TimeUnit unit) {
+        try {
+            signal.get(timeout, unit);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException | TimeoutException e) {
+            // 超时后由调用方重新检查缓存或重新抢锁
+        } finally {
+            waiters.remove(key, signal);
+        }
+    }
+
+    /**
+     * 不再等待（再次检查时缓存已经存在）
+     */
+    public void cancel(String key, CompletableFuture<Void> signal) {
+        waiters.remove(key, signal);
+    }
+
+    /**
+     * 收到重建完成的广播，唤醒等待的线程
+     */
+    public void signal(String key) {
+        CompletableFuture<Void> signal = waiters.remove(key);
+        if (signal != null) {
+            signal.complete(null);
+        }
+    }
+}
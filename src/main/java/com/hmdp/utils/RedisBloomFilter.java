@@ -0,0 +1,185 @@
+package com.hmdp.utils;
+
+import cn.hutool.core.lang.hash.MurmurHash;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.util.BitSet;
+import java.util.Collection;
+
+/**
+ * 布隆过滤器，位图保存在Redis中，本地保留一份镜像用于判断
+ * 本地镜像靠添加广播更新，并定期从Redis位图重新加载，补齐错过的广播
+ * 只会误判"存在"，判定"不存在"的一定不存在
+ */
+public class RedisBloomFilter {
+
+    /**
+     * 每批管道写入的元素个数
+     */
+    private static final int PIPELINE_BATCH = 1000;
+
+    private final String key;
+    private final byte[] rawKey;
+    private final long bitSize;
+    private final int hashCount;
+    private final StringRedisTemplate stringRedisTemplate;
+
+    /**
+     * 本地镜像，读写都加锁（BitSet不是线程安全的）
+     */
+    private final BitSet localBits;
+
+    /**
+     * 初始化完成前不做拦截，避免把已存在的数据误判为不存在
+     */
+    private volatile boolean ready;
+
+    public RedisBloomFilter(String key, long expectedInsertions, double fpp, StringRedisTemplate stringRedisTemplate) {
+        this.key = key;
+        this.rawKey = key.getBytes(StandardCharsets.UTF_8);
+        // m = -n*ln(p)/(ln2)^2  k = m/n*ln2
+        long m = (long) Math.ceil(-expectedInsertions * Math.log(fpp) / (Math.log(2) * Math.log(2)));
+        this.bitSize = Math.min(m, Integer.MAX_VALUE);
+        this.hashCount = Math.max(1, (int) Math.round((double) bitSize / expectedInsertions * Math.log(2)));
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.localBits = new BitSet((int) bitSize);
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    public void setReady(boolean ready) {
+        this.ready = ready;
+    }
+
+    /**
+     * 判断元素是否可能存在，只查本地镜像
+     */
+    public boolean mightContain(String value) {
+        long[] offsets = offsets(value);
+        synchronized (localBits) {
+            for (long offset : offsets) {
+                if (!localBits.get((int) offset)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 添加元素，同时写入Redis位图和本地镜像
+     */
+    public void add(String value) {
+        addLocal(value);
+        addRemote(value);
+    }
+
+    /**
+     * 只写入Redis位图
+     */
+    public void addRemote(String value) {
+        long[] offsets = offsets(value);
+        stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (long offset : offsets) {
+                connection.setBit(rawKey, offset, true);
+            }
+            return null;
+        });
+    }
+
+    /**
+     * 批量添加元素，按批次管道写入Redis
+     */
+    public void addAll(Collection<String> values) {
+        long[][] batch = new long[PIPELINE_BATCH][];
+        int size = 0;
+        for (String value : values) {
+            long[] offsets = offsets(value);
+            addLocal(offsets);
+            batch[size++] = offsets;
+            if (size == PIPELINE_BATCH) {
+                flush(batch, size);
+                size = 0;
+            }
+        }
+        if (size > 0) {
+            flush(batch, size);
+        }
+    }
+
+    /**
+     * 只更新本地镜像，用于接收其它节点的添加广播
+     */
+    public void addLocal(String value) {
+        addLocal(offsets(value));
+    }
+
+    /**
+     * 从Redis位图加载到本地镜像，只会置位，和本地已有的位合并
+     */
+    public void loadFromRedis() {
+        byte[] bytes = stringRedisTemplate.execute((RedisCallback<byte[]>) connection -> connection.get(rawKey));
+        if (bytes == null) {
+            return;
+        }
+        synchronized (localBits) {
+            for (int i = 0; i < bytes.length; i++) {
+                for (int j = 0; j < 8; j++) {
+                    // Redis位图中offset 0 对应第一个字节的最高位
+                    if ((bytes[i] & (0x80 >>> j)) != 0) {
+                        long offset = (long) i * 8 + j;
+                        if (offset < bitSize) {
+                            localBits.set((int) offset);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private void flush(long[][] batch, int size) {
+        stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            setBits(connection, batch, size);
+            return null;
+        });
+    }
+
+    private void setBits(RedisConnection connection, long[][] batch, int size) {
+        for (int i = 0; i < size; i++) {
+            for (long offset : batch[i]) {
+                connection.setBit(rawKey, offset, true);
+            }
+        }
+    }
+
+    private void addLocal(long[] offsets) {
+        synchronized (localBits) {
+            for (long offset : offsets) {
+                localBits.set((int) offset);
+            }
+        }
+    }
+
+    /**
+     * 双重哈希计算k个位置：h1 + i*h2
+     */
+    private long[] offsets(String value) {
+        long[] hash = MurmurHash.hash128(value);
+        long[] offsets = new long[hashCount];
+        long combined = hash[0];
+        for (int i = 0; i < hashCount; i++) {
+            offsets[i] = (combined & Long.MAX_VALUE) % bitSize;
+            combined += hash[1];
+        }
+        return offsets;
+    }
+}
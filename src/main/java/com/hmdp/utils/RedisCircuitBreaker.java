@@ -0,0 +1,254 @@
+package com.hmdp.utils;
+
+import com.hmdp.config.CacheProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * Redis熔断器
+ * CLOSED：正常调用，统计最近N次调用，失败（异常或慢调用）比例超过阈值后进入OPEN
+ * OPEN：不再访问Redis，直接走降级逻辑，等待一段时间后进入HALF_OPEN
+ * HALF_OPEN：放行少量试探调用，全部成功则恢复CLOSED，任意一次失败重新OPEN；超出试探名额的调用和OPEN一样拒绝
+ * 每个状态对应一个Epoch，状态切换就是CAS替换Epoch，统计随之清零，不需要加锁；
+ * 调用结果只计入发起调用时的Epoch，切换前发起的调用不会影响新状态
+ * 状态和状态切换记录在 cache.redis.breaker.* 指标中
+ */
+@Slf4j
+@Component
+public class RedisCircuitBreaker {
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    /**
+     * 滑动窗口中一次调用的结果
+     */
+    private static final int SUCCESS = 1;
+    private static final int FAILURE = 2;
+
+    private final CacheProperties.Breaker config;
+
+    private final MeterRegistry registry;
+
+    private final Counter rejectedCounter;
+
+    private final AtomicReference<Epoch> epoch;
+
+    public RedisCircuitBreaker(CacheProperties cacheProperties, MeterRegistry registry) {
+        this.config = cacheProperties.getBreaker();
+        this.registry = registry;
+        this.epoch = new AtomicReference<>(new Epoch(State.CLOSED, config.getWindowSize()));
+        this.rejectedCounter = registry.counter("cache.redis.breaker.rejected");
+        registry.gauge("cache.redis.breaker.state", this, b -> b.getState().ordinal());
+    }
+
+    public State getState() {
+        return epoch.get().state;
+    }
+
+    /**
+     * Redis当前是否可用：未熔断，或者熔断已到期、半开还有试探名额，不占用试探名额
+     * 为false时调用方直接走降级逻辑
+     */
+    public boolean isAvailable() {
+        Epoch current = epoch.get();
+        switch (current.state) {
+            case OPEN:
+                return System.currentTimeMillis() - current.startedAt >= config.getOpenMillis();
+            case HALF_OPEN:
+                return current.halfOpenPermits.get() < config.getHalfOpenCalls();
+            default:
+                return true;
+        }
+    }
+
+    /**
+     * 通过熔断器访问Redis，失败或熔断时执行降级逻辑
+     */
+    public <T> T execute(Supplier<T> action, Supplier<T> fallback) {
+        try {
+            return call(action);
+        } catch (RuntimeException e) {
+            return fallback.get();
+        }
+    }
+
+    /**
+     * 通过熔断器访问Redis，失败时抛出原异常，熔断时抛出 RedisUnavailableException
+     */
+    public <T> T call(Supplier<T> action) {
+        return call(action, true);
+    }
+
+    public void run(Runnable action) {
+        execute(() -> {
+            action.run();
+            return null;
+        }, () -> null);
+    }
+
+    /**
+     * 批量调用（管道、MGET等）：耗时随数据量增长，只按异常统计失败，不按慢调用统计
+     */
+    public <T> T executeBulk(Supplier<T> action, Supplier<T> fallback) {
+        try {
+            return call(action, false);
+        } catch (RuntimeException e) {
+            return fallback.get();
+        }
+    }
+
+    /**
+     * 同 executeBulk，失败时抛出异常
+     */
+    public <T> T callBulk(Supplier<T> action) {
+        return call(action, false);
+    }
+
+    public void runBulk(Runnable action) {
+        executeBulk(() -> {
+            action.run();
+            return null;
+        }, () -> null);
+    }
+
+    /**
+     * 异步调用：future完成时按耗时和异常统计结果；熔断时返回以 RedisUnavailableException 失败的future
+     */
+    public <T> CompletableFuture<T> callAsync(Supplier<CompletableFuture<T>> action) {
+        Epoch acquired = tryAcquire();
+        if (acquired == null) {
+            rejectedCounter.increment();
+            return failedFuture(new RedisUnavailableException("Redis熔断中"));
+        }
+        long begin = System.nanoTime();
+        CompletableFuture<T> future;
+        try {
+            future = action.get();
+        } catch (RuntimeException e) {
+            onResult(acquired, true);
+            return failedFuture(e);
+        }
+        return future.whenComplete((t, e) -> onResult(acquired, e != null
+                || TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - begin) >= config.getSlowCallMillis()));
+    }
+
+    private static <T> CompletableFuture<T> failedFuture(Throwable e) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        future.completeExceptionally(e);
+        return future;
+    }
+
+    private <T> T call(Supplier<T> action, boolean countSlow) {
+        Epoch acquired = tryAcquire();
+        if (acquired == null) {
+            rejectedCounter.increment();
+            throw new RedisUnavailableException("Redis熔断中");
+        }
+        long begin = System.nanoTime();
+        try {
+            T t = action.get();
+            long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - begin);
+            // 慢调用也按失败统计
+            onResult(acquired, countSlow && millis >= config.getSlowCallMillis());
+            return t;
+        } catch (RuntimeException e) {
+            onResult(acquired, true);
+            throw e;
+        }
+    }
+
+    /**
+     * @return 放行时返回当前Epoch，拒绝时返回null
+     */
+    private Epoch tryAcquire() {
+        while (true) {
+            Epoch current = epoch.get();
+            if (current.state == State.CLOSED) {
+                return current;
+            }
+            if (current.state == State.OPEN) {
+                if (System.currentTimeMillis() - current.startedAt < config.getOpenMillis()) {
+                    return null;
+                }
+                // 熔断到期，只有一个线程能切换到半开，其它线程重新读取
+                transition(current, State.HALF_OPEN);
+                continue;
+            }
+            // 半开：只放行有限次数的试探
+            return current.halfOpenPermits.incrementAndGet() <= config.getHalfOpenCalls() ? current : null;
+        }
+    }
+
+    private void onResult(Epoch acquired, boolean failed) {
+        if (epoch.get() != acquired) {
+            // 调用期间状态已经切换，结果不再计入
+            return;
+        }
+        if (acquired.state == State.HALF_OPEN) {
+            if (failed) {
+                transition(acquired, State.OPEN);
+            } else if (acquired.halfOpenSuccesses.incrementAndGet() >= config.getHalfOpenCalls()) {
+                transition(acquired, State.CLOSED);
+            }
+            return;
+        }
+        if (acquired.state != State.CLOSED) {
+            return;
+        }
+        // 1.滑动窗口记录本次结果，覆盖最早的一次
+        long index = acquired.calls.getAndIncrement();
+        int previous = acquired.window.getAndSet((int) (index % acquired.window.length()), failed ? FAILURE : SUCCESS);
+        int failures = acquired.failures.addAndGet((failed ? 1 : 0) - (previous == FAILURE ? 1 : 0));
+        long count = Math.min(index + 1, acquired.window.length());
+        // 2.调用次数足够且失败比例超过阈值，熔断
+        if (count >= config.getMinimumCalls() && failures * 100L >= config.getFailureRateThreshold() * count) {
+            transition(acquired, State.OPEN);
+        }
+    }
+
+    private void transition(Epoch from, State newState) {
+        if (!epoch.compareAndSet(from, new Epoch(newState, config.getWindowSize()))) {
+            // 其它线程已经切换
+            return;
+        }
+        registry.counter("cache.redis.breaker.transitions",
+                "from", from.state.name().toLowerCase(), "to", newState.name().toLowerCase()).increment();
+        log.warn("Redis熔断器状态切换 {} -> {}", from.state, newState);
+    }
+
+    /**
+     * 一个状态从进入到离开期间的统计，切换状态时整体替换
+     */
+    private static class Epoch {
+        private final State state;
+        private final long startedAt = System.currentTimeMillis();
+        /**
+         * 最近windowSize次调用的结果：0未使用，SUCCESS，FAILURE
+         */
+        private final AtomicIntegerArray window;
+        private final AtomicLong calls = new AtomicLong();
+        private final AtomicInteger failures = new AtomicInteger();
+        /**
+         * 半开状态下已放行和已成功的试探调用数
+         */
+        private final AtomicInteger halfOpenPermits = new AtomicInteger();
+        private final AtomicInteger halfOpenSuccesses = new AtomicInteger();
+
+        private Epoch(State state, int windowSize) {
+            this.state = state;
+            this.window = new AtomicIntegerArray(state == State.CLOSED ? windowSize : 1);
+        }
+    }
+}
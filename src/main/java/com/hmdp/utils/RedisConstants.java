@@ -10,13 +10,65 @@ public class RedisConstants {
 
     public static final Long CACHE_SHOP_TTL = 30L;
     public static final String CACHE_SHOP_KEY = "cache:shop:";
+    public static final String CACHE_SHOP_HASH_KEY = "cache:shop:hash:";
+
+    public static final String CACHE_INVALIDATE_TOPIC = "cache:invalidate";
+
+    public static final String BLOOM_FILTER_KEY = "bloom:";
+    public static final String BLOOM_ADD_TOPIC = "bloom:add";
+    public static final String BLOOM_SEEDED_SUFFIX = ":seeded";
 
     public static final String LOCK_SHOP_KEY = "lock:shop:";
     public static final Long LOCK_SHOP_TTL = 10L;
+    public static final String LOCK_CACHE_KEY = "lock:";
+
+    /**
+     * 缓存版本号key的后缀，以及更新后留下的版本标记的有效期（分钟）
+     */
+    public static final String CACHE_VERSION_SUFFIX = ":ver";
+    public static final Long CACHE_VERSION_TTL = 60L;
+    public static final String CACHE_REBUILT_TOPIC = "cache:rebuilt";
+
+    /**
+     * 缓存命名空间的代数，以及代数变更的广播
+     */
+    public static final String CACHE_GEN_KEY = "cache:gen:";
+    public static final String CACHE_GEN_TOPIC = "cache:gen:bump";
 
     public static final String SECKILL_STOCK_KEY = "seckill:stock:";
+    public static final String SECKILL_ORDER_KEY = "seckill:order:";
+    /**
+     * 秒杀时间，hash：begin、end（毫秒），由秒杀脚本检查
+     */
+    public static final String SECKILL_VOUCHER_KEY = "seckill:voucher:";
+    /**
+     * 秒杀库存的分桶数，分桶后的key为 seckill:stock:{voucherId:i}
+     */
+    public static final String SECKILL_BUCKETS_KEY = "seckill:buckets:";
+    /**
+     * 秒杀券售罄、补充库存的广播，消息体是优惠券id
+     */
+    public static final String SECKILL_SOLD_OUT_TOPIC = "seckill:soldout";
+    public static final String SECKILL_RESTOCK_TOPIC = "seckill:restock";
+    /**
+     * 订单队列：不分桶的券使用 stream.orders，分桶的券每个桶一个 stream.orders:{voucherId:i}，
+     * 分桶队列登记在 seckill:streams 中，消费者据此读取所有队列
+     */
+    public static final String SECKILL_ORDER_STREAM = "stream.orders";
+    public static final String SECKILL_ORDER_STREAMS_KEY = "seckill:streams";
+    public static final String SECKILL_ORDER_DEAD_LETTER_STREAM = "stream.orders.dlq";
+
+    public static final Long CACHE_BLOG_TTL = 30L;
+    public static final String CACHE_BLOG_KEY = "cache:blog:";
+
+    public static final Long CACHE_USER_TTL = 30L;
+    public static final String CACHE_USER_KEY = "cache:user:";
+    public static final String CACHE_USER_INFO_KEY = "cache:user:info:";
+    public static final String CACHE_SHOP_VOUCHER_KEY = "cache:shop:voucher:";
+    public static final String CACHE_SECKILL_VOUCHER_KEY = "cache:seckill:voucher:";
 
-    public static final String CACHE_TYPE_LIST = "cache_type_list";
+    public static final String CACHE_TYPE_KEY = "cache:type:";
+    public static final String CACHE_TYPE_LIST = "list";
     public static final String BLOG_LIKED_KEY = "blog:liked:";
     public static final String FEED_KEY = "feed:";
     public static final String SHOP_GEO_KEY = "shop:geo:";
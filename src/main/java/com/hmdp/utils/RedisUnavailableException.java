@@ -0,0 +1,11 @@
+package com.hmdp.utils;
+
+/**
+ * Redis熔断期间拒绝访问
+ */
+public class RedisUnavailableException extends RuntimeException {
+
+    public RedisUnavailableException(String message) {
+        super(message);
+    }
+}
@@ -18,8 +18,18 @@ public class RefreshTokenInterceptor implements HandlerInterceptor {
 
     private StringRedisTemplate stringRedisTemplate;
 
-    public RefreshTokenInterceptor(StringRedisTemplate stringRedisTemplate) {
+    private RedisCircuitBreaker redisCircuitBreaker;
+
+    private LocalCache localCache;
+
+    private HotKeyDetector hotKeyDetector;
+
+    public RefreshTokenInterceptor(StringRedisTemplate stringRedisTemplate, RedisCircuitBreaker redisCircuitBreaker,
+                                   LocalCache localCache, HotKeyDetector hotKeyDetector) {
         this.stringRedisTemplate = stringRedisTemplate;
+        this.redisCircuitBreaker = redisCircuitBreaker;
+        this.localCache = localCache;
+        this.hotKeyDetector = hotKeyDetector;
     }
 
     @Override
@@ -31,7 +41,25 @@ public class RefreshTokenInterceptor implements HandlerInterceptor {
         }
         // 2.基于TOKEN获取redis中的用户
         String key  = LOGIN_USER_KEY + token;
-        Map<Object, Object> userMap = stringRedisTemplate.opsForHash().entries(key);
+        // 热点token（同一个用户的高频请求）短时间内直接使用本地缓存，不访问Redis
+        boolean hot = hotKeyDetector.record(key);
+        if (hot) {
+            Object local = localCache.get(key);
+            if (local instanceof UserDTO) {
+                UserHolder.saveUser((UserDTO) local);
+                return true;
+            }
+        }
+        Map<Object, Object> userMap = redisCircuitBreaker.execute(
+                () -> stringRedisTemplate.opsForHash().entries(key), () -> null);
+        if (userMap == null) {
+            // 4.Redis不可用，使用本节点最近一次读到的登录信息，不刷新有效期
+            Object stale = localCache.getStale(key);
+            if (stale instanceof UserDTO) {
+                UserHolder.saveUser((UserDTO) stale);
+            }
+            return true;
+        }
         // 3.判断用户是否存在
         if (userMap.isEmpty()) {
             return true;
@@ -40,8 +68,12 @@ public class RefreshTokenInterceptor implements HandlerInterceptor {
         UserDTO userDTO = BeanUtil.fillBeanWithMap(userMap, new UserDTO(), false);
         // 6.存在，保存用户信息到 ThreadLocal
         UserHolder.saveUser(userDTO);
+        localCache.putStale(key, userDTO);
+        if (hot) {
+            localCache.putHot(key, userDTO);
+        }
         // 7.刷新token有效期
-        stringRedisTemplate.expire(key, LOGIN_USER_TTL, TimeUnit.MINUTES);
+        redisCircuitBreaker.run(() -> stringRedisTemplate.expire(key, LOGIN_USER_TTL, TimeUnit.MINUTES));
         // 8.放行
         return true;
     }
@@ -0,0 +1,308 @@
+package com.hmdp.utils;
+
+import com.hmdp.config.SeckillProperties;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static com.hmdp.utils.RedisConstants.SECKILL_BUCKETS_KEY;
+import static com.hmdp.utils.RedisConstants.SECKILL_ORDER_KEY;
+import static com.hmdp.utils.RedisConstants.SECKILL_ORDER_STREAM;
+import static com.hmdp.utils.RedisConstants.SECKILL_ORDER_STREAMS_KEY;
+import static com.hmdp.utils.RedisConstants.SECKILL_RESTOCK_TOPIC;
+import static com.hmdp.utils.RedisConstants.SECKILL_SOLD_OUT_TOPIC;
+import static com.hmdp.utils.RedisConstants.SECKILL_STOCK_KEY;
+import static com.hmdp.utils.RedisConstants.SECKILL_VOUCHER_KEY;
+
+/**
+ * 秒杀库存，支持把一张券的库存拆分到多个桶，分散单个热点key的压力
+ * 桶的key带hash tag：seckill:stock:{voucherId:i}、seckill:order:{voucherId:i}、stream.orders:{voucherId:i}，
+ * 同一个桶的库存、订单和订单队列在同一个slot，脚本用到的key都通过KEYS传入
+ * 用户按 userId % 桶数 固定路由到home桶，一人一单只在home桶检查；home桶没有库存时依次到其它桶扣减，
+ * 扣减成功后才在home桶登记用户并发送消息，没有扣到库存的请求不会留下登记
+ * 桶数为1时使用原来的单key脚本
+ * 秒杀时间保存在 seckill:voucher:{voucherId:i} 中（不分桶时是 seckill:voucher:voucherId），由脚本检查
+ * 售罄后在本地记录售罄标记并广播给其它节点，之后的请求不再访问Redis，补充库存时清除
+ * 分桶券的订单队列登记在 seckill:streams 中，售罄或秒杀结束后注销（消费者读完剩余消息后不再读取），补充库存时重新登记
+ */
+@Component
+public class SeckillStock {
+
+    /**
+     * 下单结果：成功、库存不足、重复下单、尚未开始、已经结束
+     */
+    public static final int OK = 0;
+    public static final int SOLD_OUT = 1;
+    public static final int DUPLICATE = 2;
+    public static final int NOT_STARTED = 3;
+    public static final int ENDED = 4;
+
+    /**
+     * home桶没有库存，需要到其它桶扣减（用户尚未登记）
+     */
+    private static final int HOME_EMPTY = 5;
+
+    private static final DefaultRedisScript<Long> SECKILL_SCRIPT;
+    private static final DefaultRedisScript<Long> BUCKET_SCRIPT;
+    private static final DefaultRedisScript<Long> BUCKET_TAKE_SCRIPT;
+    private static final DefaultRedisScript<Long> BUCKET_CONFIRM_SCRIPT;
+
+    static {
+        SECKILL_SCRIPT = new DefaultRedisScript<>();
+        SECKILL_SCRIPT.setLocation(new ClassPathResource("seckill.lua"));
+        SECKILL_SCRIPT.setResultType(Long.class);
+        BUCKET_SCRIPT = new DefaultRedisScript<>();
+        BUCKET_SCRIPT.setLocation(new ClassPathResource("seckill_bucket.lua"));
+        BUCKET_SCRIPT.setResultType(Long.class);
+        BUCKET_TAKE_SCRIPT = new DefaultRedisScript<>();
+        BUCKET_TAKE_SCRIPT.setLocation(new ClassPathResource("seckill_bucket_take.lua"));
+        BUCKET_TAKE_SCRIPT.setResultType(Long.class);
+        BUCKET_CONFIRM_SCRIPT = new DefaultRedisScript<>();
+        BUCKET_CONFIRM_SCRIPT.setLocation(new ClassPathResource("seckill_bucket_confirm.lua"));
+        BUCKET_CONFIRM_SCRIPT.setResultType(Long.class);
+    }
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Resource
+    private SeckillProperties seckillProperties;
+
+    /**
+     * 每张券的桶数，创建后不会再变化
+     */
+    private final Map<Long, Integer> bucketCounts = new ConcurrentHashMap<>();
+
+    /**
+     * 售罄的券 -> 标记过期时间
+     */
+    private final Map<Long, Long> soldOutUntil = new ConcurrentHashMap<>();
+
+    /**
+     * 本节点已经注销过订单队列的券，避免重复注销
+     */
+    private final Set<Long> retired = ConcurrentHashMap.newKeySet();
+
+    public static String stockKey(Long voucherId, int bucket) {
+        return SECKILL_STOCK_KEY + "{" + voucherId + ":" + bucket + "}";
+    }
+
+    public static String orderKey(Long voucherId, int bucket) {
+        return SECKILL_ORDER_KEY + "{" + voucherId + ":" + bucket + "}";
+    }
+
+    public static String voucherKey(Long voucherId, int bucket) {
+        return SECKILL_VOUCHER_KEY + "{" + voucherId + ":" + bucket + "}";
+    }
+
+    public static String streamKey(Long voucherId, int bucket) {
+        return SECKILL_ORDER_STREAM + ":{" + voucherId + ":" + bucket + "}";
+    }
+
+    /**
+     * 保存秒杀库存和秒杀时间到Redis，库存按配置的桶数平均拆分，余数分给前面的桶
+     */
+    public void seed(Long voucherId, int stock, LocalDateTime beginTime, LocalDateTime endTime) {
+        int buckets = Math.max(1, seckillProperties.getStockBuckets());
+        Map<String, String> window = new HashMap<>(2);
+        window.put("begin", String.valueOf(toMillis(beginTime)));
+        window.put("end", String.valueOf(toMillis(endTime)));
+        if (buckets == 1) {
+            stringRedisTemplate.opsForHash().putAll(SECKILL_VOUCHER_KEY + voucherId, window);
+            stringRedisTemplate.opsForValue().set(SECKILL_STOCK_KEY + voucherId, String.valueOf(stock));
+        } else {
+            for (int i = 0; i < buckets; i++) {
+                int share = stock / buckets + (i < stock % buckets ? 1 : 0);
+                stringRedisTemplate.opsForHash().putAll(voucherKey(voucherId, i), window);
+                stringRedisTemplate.opsForValue().set(stockKey(voucherId, i), String.valueOf(share));
+            }
+            // 登记各个桶的订单队列，消费者定期读取登记表，为新队列创建消费者组
+            stringRedisTemplate.opsForSet().add(SECKILL_ORDER_STREAMS_KEY, streamKeys(voucherId, buckets));
+        }
+        // 桶数最后写入，写入之前的请求按单key处理，查不到库存
+        stringRedisTemplate.opsForValue().set(SECKILL_BUCKETS_KEY + voucherId, String.valueOf(buckets));
+        bucketCounts.put(voucherId, buckets);
+        restocked(voucherId);
+    }
+
+    /**
+     * 补充库存，平均加到各个桶，并清除所有节点的售罄标记
+     */
+    public void replenish(Long voucherId, int amount) {
+        int buckets = buckets(voucherId);
+        if (buckets == 1) {
+            stringRedisTemplate.opsForValue().increment(SECKILL_STOCK_KEY + voucherId, amount);
+        } else {
+            for (int i = 0; i < buckets; i++) {
+                int share = amount / buckets + (i < amount % buckets ? 1 : 0);
+                if (share > 0) {
+                    stringRedisTemplate.opsForValue().increment(stockKey(voucherId, i), share);
+                }
+            }
+            // 售罄时注销过订单队列，重新登记
+            stringRedisTemplate.opsForSet().add(SECKILL_ORDER_STREAMS_KEY, streamKeys(voucherId, buckets));
+        }
+        restocked(voucherId);
+    }
+
+    /**
+     * 本地是否已经确认售罄
+     */
+    public boolean isSoldOut(Long voucherId) {
+        Long until = soldOutUntil.get(voucherId);
+        if (until == null) {
+            return false;
+        }
+        if (until < System.currentTimeMillis()) {
+            soldOutUntil.remove(voucherId, until);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * 收到其它节点的售罄广播
+     */
+    public void onSoldOut(Long voucherId) {
+        soldOutUntil.put(voucherId, System.currentTimeMillis() + seckillProperties.getSoldOutTtlMillis());
+    }
+
+    /**
+     * 收到其它节点的补充库存广播
+     */
+    public void onRestock(Long voucherId) {
+        soldOutUntil.remove(voucherId);
+        retired.remove(voucherId);
+    }
+
+    private void soldOut(Long voucherId) {
+        // 已经有标记的只延长有效期，不重复广播
+        boolean known = isSoldOut(voucherId);
+        onSoldOut(voucherId);
+        if (!known) {
+            stringRedisTemplate.convertAndSend(SECKILL_SOLD_OUT_TOPIC, voucherId.toString());
+        }
+    }
+
+    /**
+     * 售罄或秒杀结束后不会再有新消息，注销分桶订单队列；不分桶的 stream.orders 一直消费
+     * 售罄时注销之后再检查一次库存：并发的补充库存（先加库存再登记）可能在注销之前已经登记，这时重新登记
+     */
+    private void retireStreams(Long voucherId, boolean soldOut) {
+        int buckets = buckets(voucherId);
+        if (buckets == 1 || !retired.add(voucherId)) {
+            return;
+        }
+        String[] streams = streamKeys(voucherId, buckets);
+        stringRedisTemplate.opsForSet().remove(SECKILL_ORDER_STREAMS_KEY, (Object[]) streams);
+        if (!soldOut) {
+            return;
+        }
+        for (int i = 0; i < buckets; i++) {
+            String stock = stringRedisTemplate.opsForValue().get(stockKey(voucherId, i));
+            if (stock != null && Integer.parseInt(stock) > 0) {
+                retired.remove(voucherId);
+                stringRedisTemplate.opsForSet().add(SECKILL_ORDER_STREAMS_KEY, streams);
+                return;
+            }
+        }
+    }
+
+    private static String[] streamKeys(Long voucherId, int buckets) {
+        String[] streams = new String[buckets];
+        for (int i = 0; i < buckets; i++) {
+            streams[i] = streamKey(voucherId, i);
+        }
+        return streams;
+    }
+
+    private void restocked(Long voucherId) {
+        onRestock(voucherId);
+        stringRedisTemplate.convertAndSend(SECKILL_RESTOCK_TOPIC, voucherId.toString());
+    }
+
+    /**
+     * 扣减库存并发送下单消息
+     * @return OK / SOLD_OUT / DUPLICATE / NOT_STARTED / ENDED
+     */
+    public int acquire(Long voucherId, Long userId, long orderId) {
+        int result = doAcquire(voucherId, userId, orderId);
+        if (result == SOLD_OUT) {
+            soldOut(voucherId);
+        }
+        if (result == SOLD_OUT || result == ENDED) {
+            retireStreams(voucherId, result == SOLD_OUT);
+        }
+        return result;
+    }
+
+    private int doAcquire(Long voucherId, Long userId, long orderId) {
+        String[] args = {voucherId.toString(), userId.toString(), String.valueOf(orderId),
+                String.valueOf(System.currentTimeMillis())};
+        int buckets = buckets(voucherId);
+        if (buckets == 1) {
+            return stringRedisTemplate.execute(SECKILL_SCRIPT,
+                    Arrays.asList(SECKILL_STOCK_KEY + voucherId, SECKILL_ORDER_KEY + voucherId,
+                            SECKILL_VOUCHER_KEY + voucherId, SECKILL_ORDER_STREAM),
+                    (Object[]) args).intValue();
+        }
+        // 1.home桶：一人一单检查，有库存直接扣减
+        int home = (int) (userId % buckets);
+        int r = stringRedisTemplate.execute(BUCKET_SCRIPT,
+                Arrays.asList(stockKey(voucherId, home), orderKey(voucherId, home), voucherKey(voucherId, home),
+                        streamKey(voucherId, home)),
+                (Object[]) args).intValue();
+        if (r != HOME_EMPTY) {
+            return r;
+        }
+        // 2.home桶没有库存，依次到其它桶扣减
+        for (int i = 1; i < buckets; i++) {
+            int bucket = (home + i) % buckets;
+            Long taken = stringRedisTemplate.execute(BUCKET_TAKE_SCRIPT,
+                    Collections.singletonList(stockKey(voucherId, bucket)));
+            if (taken == null || taken != OK) {
+                continue;
+            }
+            // 3.扣到库存后在home桶登记用户并发送消息；同一用户的并发请求已经登记时，把库存还回去
+            int confirmed = stringRedisTemplate.execute(BUCKET_CONFIRM_SCRIPT,
+                    Arrays.asList(orderKey(voucherId, home), streamKey(voucherId, home)),
+                    voucherId.toString(), userId.toString(), String.valueOf(orderId)).intValue();
+            if (confirmed != OK) {
+                stringRedisTemplate.opsForValue().increment(stockKey(voucherId, bucket));
+            }
+            return confirmed;
+        }
+        // 4.所有桶都没有库存
+        return SOLD_OUT;
+    }
+
+    public static long toMillis(LocalDateTime time) {
+        return time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    private int buckets(Long voucherId) {
+        Integer cached = bucketCounts.get(voucherId);
+        if (cached != null) {
+            return cached;
+        }
+        String value = stringRedisTemplate.opsForValue().get(SECKILL_BUCKETS_KEY + voucherId);
+        if (value == null) {
+            // 桶数出现之前创建的券，只有单个key，不缓存，之后重新创建时能读到新的桶数
+            return 1;
+        }
+        int buckets = Integer.parseInt(value);
+        bucketCounts.put(voucherId, buckets);
+        return buckets;
+    }
+}
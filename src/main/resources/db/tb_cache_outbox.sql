@@ -0,0 +1,18 @@
+-- 缓存失效发件箱，和业务数据在同一个事务中写入，由 CacheOutboxRelay 异步处理
+CREATE TABLE IF NOT EXISTS `tb_cache_outbox` (
+  `id` bigint(20) unsigned NOT NULL AUTO_INCREMENT COMMENT '主键',
+  `cache_key` varchar(255) NOT NULL COMMENT '要处理的缓存key',
+  `action` tinyint(1) unsigned NOT NULL DEFAULT 1 COMMENT '动作 1：删除缓存；2：更新hash缓存的部分字段',
+  `payload` varchar(2048) DEFAULT NULL COMMENT '附加数据',
+  `status` tinyint(1) unsigned NOT NULL DEFAULT 0 COMMENT '0：待处理；1：已完成；2：重试次数用尽；3：处理中',
+  `retry_count` int(10) unsigned NOT NULL DEFAULT 0 COMMENT '已重试次数',
+  `next_retry_time` timestamp NOT NULL DEFAULT CURRENT_TIMESTAMP COMMENT '下次可以处理的时间，处理中时是认领的过期时间',
+  `claim_token` varchar(64) DEFAULT NULL COMMENT '认领这条消息的中继批次',
+  `create_time` timestamp NOT NULL DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间',
+  `update_time` timestamp NOT NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP COMMENT '更新时间',
+  PRIMARY KEY (`id`) USING BTREE,
+  KEY `idx_status_next_retry` (`status`, `next_retry_time`, `id`) USING BTREE,
+  KEY `idx_status_update_time` (`status`, `update_time`) USING BTREE,
+  KEY `idx_claim_token` (`claim_token`) USING BTREE,
+  KEY `idx_cache_key` (`cache_key`) USING BTREE
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 ROW_FORMAT=COMPACT;
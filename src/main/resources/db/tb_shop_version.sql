@@ -0,0 +1,3 @@
+-- 店铺缓存的版本号，每次更新+1，重建缓存时用来拒绝旧数据（update_time只精确到秒，同一秒内的两次更新无法区分）
+ALTER TABLE `tb_shop`
+  ADD COLUMN `version` bigint(20) unsigned NOT NULL DEFAULT 0 COMMENT '版本号，每次更新+1' AFTER `open_hours`;
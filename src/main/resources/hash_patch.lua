@@ -0,0 +1,29 @@
+-- 只在hash缓存存在时更新字段，不存在说明缓存已失效，等下次读取时重建
+-- 空值缓存（只有 _null 字段）也不更新，等过期后重建
+-- 带版本号时：比当前版本旧的更新直接丢弃（乱序到达）；缓存不存在时留下版本标记（新版本号-1，和versioned_evict一致），
+-- 阻止之前读到旧数据的重建写入
+-- KEYS[1]：hash缓存的key，KEYS[2]：版本号key
+-- ARGV[1]：新版本号，为空表示没有版本号；ARGV[2]：版本标记的有效期（秒）
+-- ARGV[3..]：field1 value1 field2 value2 ...
+local version = tonumber(ARGV[1])
+local cur = redis.call('get', KEYS[2])
+if (version and cur and tonumber(cur) > version) then
+    return 0
+end
+if (redis.call('exists', KEYS[1]) == 0 or redis.call('hexists', KEYS[1], '_null') == 1) then
+    if (version and ((not cur) or tonumber(cur) < version - 1)) then
+        redis.call('set', KEYS[2], version - 1, 'EX', ARGV[2])
+    end
+    return 0
+end
+redis.call('hset', KEYS[1], unpack(ARGV, 3))
+if (version) then
+    -- 版本号和hash同时过期
+    local ttl = redis.call('ttl', KEYS[1])
+    if (ttl > 0) then
+        redis.call('set', KEYS[2], version, 'EX', ttl)
+    else
+        redis.call('set', KEYS[2], version)
+    end
+end
+return 1
@@ -0,0 +1,17 @@
+-- 带版本号重建hash缓存：只有版本号大于当前版本时才整体替换hash
+-- KEYS[1]：hash缓存的key，KEYS[2]：版本号key
+-- ARGV[1]：版本号，为空表示数据没有版本号，直接写入；ARGV[2]：有效期（秒）
+-- ARGV[3..]：field1 value1 field2 value2 ...
+if (ARGV[1] ~= '') then
+    local cur = redis.call('get', KEYS[2])
+    if (cur and tonumber(cur) >= tonumber(ARGV[1])) then
+        -- 已经有相同或更新的版本（或更新后留下的版本标记），拒绝旧数据
+        return 0
+    end
+    redis.call('set', KEYS[2], ARGV[1], 'EX', ARGV[2])
+end
+-- 先删除再写入，避免残留已经置空的字段
+redis.call('del', KEYS[1])
+redis.call('hset', KEYS[1], unpack(ARGV, 3))
+redis.call('expire', KEYS[1], ARGV[2])
+return 1
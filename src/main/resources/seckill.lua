@@ -5,14 +5,30 @@ local voucherId = ARGV[1]
 local userId = ARGV[2]
 -- 1.3.订单id
 local orderId = ARGV[3]
+-- 1.4.当前时间（毫秒）
+local now = tonumber(ARGV[4])
 
--- 2.数据key
--- 2.1.库存key
-local stockKey = 'seckill:stock:' .. voucherId
--- 2.2.订单key
-local orderKey = 'seckill:order:' .. voucherId
+-- 2.数据key，全部由KEYS传入
+-- 2.1.库存key seckill:stock:voucherId
+local stockKey = KEYS[1]
+-- 2.2.订单key seckill:order:voucherId
+local orderKey = KEYS[2]
+-- 2.3.秒杀时间key seckill:voucher:voucherId（hash：begin、end，毫秒）
+local voucherKey = KEYS[3]
+-- 2.4.订单队列 stream.orders
+local streamKey = KEYS[4]
 
 -- 3.脚本业务
+-- 3.0.判断秒杀时间，没有保存秒杀时间的券（旧数据）不检查
+local window = redis.call('hmget', voucherKey, 'begin', 'end')
+if (window[1] and now < tonumber(window[1])) then
+    -- 尚未开始，返回3
+    return 3
+end
+if (window[2] and now > tonumber(window[2])) then
+    -- 已经结束，返回4
+    return 4
+end
 -- 3.1.判断库存是否充足 get stockKey
 local stock = redis.call('get', stockKey)
 local number = tonumber(stock)
@@ -30,5 +46,5 @@ redis.call('incrby', stockKey, -1)
 -- 3.5.下单（保存用户）sadd orderKey userId
 redis.call('sadd', orderKey, userId)
 -- 3.6.发送消息到队列中， XADD stream.orders * k1 v1 k2 v2 ...
-redis.call('xadd', 'stream.orders', '*', 'userId', userId, 'voucherId', voucherId, 'id', orderId)
+redis.call('xadd', streamKey, '*', 'userId', userId, 'voucherId', voucherId, 'id', orderId)
 return 0
\ No newline at end of file
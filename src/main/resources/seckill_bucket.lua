@@ -0,0 +1,33 @@
+-- 分桶库存的下单脚本，在用户所属的桶（home桶）上执行，库存key和订单key使用同一个hash tag，位于同一个slot
+-- KEYS[1]：home桶库存key seckill:stock:{voucherId:i}
+-- KEYS[2]：home桶订单key seckill:order:{voucherId:i}，同一用户总是路由到同一个home桶，一人一单只需检查这里
+-- KEYS[3]：home桶秒杀时间key seckill:voucher:{voucherId:i}（hash：begin、end，毫秒）
+-- KEYS[4]：home桶订单队列 stream.orders:{voucherId:i}
+-- ARGV：优惠券id、用户id、订单id、当前时间（毫秒）
+local voucherId = ARGV[1]
+local userId = ARGV[2]
+local orderId = ARGV[3]
+local now = tonumber(ARGV[4])
+
+-- 0.判断秒杀时间：尚未开始返回3，已经结束返回4
+local window = redis.call('hmget', KEYS[3], 'begin', 'end')
+if (window[1] and now < tonumber(window[1])) then
+    return 3
+end
+if (window[2] and now > tonumber(window[2])) then
+    return 4
+end
+-- 1.判断用户是否下单
+if (redis.call('sismember', KEYS[2], userId) == 1) then
+    return 2
+end
+-- 2.home桶没有库存，由调用方到其它桶扣减，扣减成功后再登记（见 seckill_bucket_confirm.lua）
+local stock = tonumber(redis.call('get', KEYS[1]))
+if (stock == nil or stock <= 0) then
+    return 5
+end
+-- 3.扣库存，登记用户，发送消息到队列中
+redis.call('incrby', KEYS[1], -1)
+redis.call('sadd', KEYS[2], userId)
+redis.call('xadd', KEYS[4], '*', 'userId', userId, 'voucherId', voucherId, 'id', orderId)
+return 0
@@ -0,0 +1,10 @@
+-- 已经从其它桶扣减了库存，在home桶登记用户并发送消息
+-- 并发的同一用户只有一个能登记成功，失败的返回2，由调用方把库存还给扣减的桶
+-- KEYS[1]：home桶订单key seckill:order:{voucherId:i}
+-- KEYS[2]：home桶订单队列 stream.orders:{voucherId:i}
+-- ARGV：优惠券id、用户id、订单id
+if (redis.call('sadd', KEYS[1], ARGV[2]) == 0) then
+    return 2
+end
+redis.call('xadd', KEYS[2], '*', 'userId', ARGV[2], 'voucherId', ARGV[1], 'id', ARGV[3])
+return 0
@@ -0,0 +1,8 @@
+-- home桶没有库存时，从其它桶扣减一个库存，成功后由调用方在home桶登记用户并发送消息
+-- KEYS[1]：其它桶的库存key seckill:stock:{voucherId:i}
+local stock = tonumber(redis.call('get', KEYS[1]))
+if (stock == nil or stock <= 0) then
+    return 1
+end
+redis.call('incrby', KEYS[1], -1)
+return 0
@@ -0,0 +1,11 @@
+-- 数据更新后删除缓存，同时留下版本标记，之后读到旧数据的重建无法再写入
+-- 标记记为 新版本号-1：重建只接受比标记大的版本，新版本的数据可以写入，之前的版本都被拒绝
+-- KEYS[1]：缓存key，KEYS[2]：版本号key
+-- ARGV[1]：新版本号，ARGV[2]：版本标记的有效期（秒）
+local marker = tonumber(ARGV[1]) - 1
+local cur = redis.call('get', KEYS[2])
+if ((not cur) or tonumber(cur) < marker) then
+    redis.call('set', KEYS[2], marker, 'EX', ARGV[2])
+end
+redis.call('del', KEYS[1])
+return 1
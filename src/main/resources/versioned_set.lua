@@ -0,0 +1,17 @@
+-- 带版本号的写缓存（重建）：只有版本号大于当前版本时才写入
+-- 版本号严格递增，版本相同说明缓存中已经是这份数据，同样不写入
+-- KEYS[1]：缓存key，KEYS[2]：版本号key
+-- ARGV[1]：版本号，ARGV[2]：缓存值，ARGV[3]：有效期（秒），小于等于0表示不过期
+local cur = redis.call('get', KEYS[2])
+if (cur and tonumber(cur) >= tonumber(ARGV[1])) then
+    -- 已经有相同或更新的版本（或更新后留下的版本标记），拒绝旧数据
+    return 0
+end
+if (tonumber(ARGV[3]) > 0) then
+    redis.call('set', KEYS[1], ARGV[2], 'EX', ARGV[3])
+    redis.call('set', KEYS[2], ARGV[1], 'EX', ARGV[3])
+else
+    redis.call('set', KEYS[1], ARGV[2])
+    redis.call('set', KEYS[2], ARGV[1])
+end
+return 1
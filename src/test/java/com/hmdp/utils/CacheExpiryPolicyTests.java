@@ -0,0 +1,72 @@
+package com.hmdp.utils;
+
+import com.hmdp.config.CacheProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CacheExpiryPolicyTests {
+
+    @Test
+    void testJitterBounds() {
+        CacheExpiryPolicy policy = policy(0.1, 0);
+        Set<Long> ttls = new HashSet<>();
+        for (int i = 0; i < 1000; i++) {
+            long ttl = policy.ttlSeconds("cache:shop:1", 1800);
+            // 只会延长不会缩短，最多延长10%
+            assertTrue(ttl >= 1800 && ttl <= 1980, "ttl=" + ttl);
+            ttls.add(ttl);
+        }
+        assertTrue(ttls.size() > 1, "同一个key多次写入应该有不同的抖动");
+    }
+
+    @Test
+    void testSpreadIsStablePerKey() {
+        CacheExpiryPolicy policy = policy(0, 0.2);
+        Set<Long> ttls = new HashSet<>();
+        for (int i = 0; i < 100; i++) {
+            long ttl = policy.ttlSeconds("cache:shop:" + i, 1800);
+            assertTrue(ttl >= 1800 && ttl <= 2160, "ttl=" + ttl);
+            // 同一个key每次写入的偏移相同
+            assertEquals(ttl, policy.ttlSeconds("cache:shop:" + i, 1800));
+            ttls.add(ttl);
+        }
+        assertTrue(ttls.size() > 1, "不同key的偏移应该分散");
+    }
+
+    @Test
+    void testLongestPrefixWins() {
+        CacheProperties cacheProperties = new CacheProperties();
+        cacheProperties.getExpiry().setJitterRatio(0);
+        CacheProperties.Expiry shop = new CacheProperties.Expiry();
+        shop.setJitterRatio(0.5);
+        CacheProperties.Expiry voucher = new CacheProperties.Expiry();
+        voucher.setJitterRatio(0);
+        cacheProperties.getExpiryPrefixes().put("cache:shop:", shop);
+        cacheProperties.getExpiryPrefixes().put("cache:shop:voucher:", voucher);
+        CacheExpiryPolicy policy = new CacheExpiryPolicy(cacheProperties, new SimpleMeterRegistry());
+        for (int i = 0; i < 100; i++) {
+            assertEquals(60, policy.ttlSeconds("cache:shop:voucher:" + i, 60));
+            assertEquals(60, policy.ttlSeconds("cache:blog:" + i, 60));
+            assertTrue(policy.ttlSeconds("cache:shop:" + i, 60) <= 90);
+        }
+    }
+
+    @Test
+    void testNonPositiveTtlUnchanged() {
+        CacheExpiryPolicy policy = policy(0.5, 0.5);
+        assertEquals(-1, policy.ttlSeconds("cache:type:list", -1));
+        assertEquals(0, policy.ttlSeconds("cache:type:list", 0));
+    }
+
+    private static CacheExpiryPolicy policy(double jitterRatio, double spreadRatio) {
+        CacheProperties cacheProperties = new CacheProperties();
+        cacheProperties.getExpiry().setJitterRatio(jitterRatio);
+        cacheProperties.getExpiry().setSpreadRatio(spreadRatio);
+        return new CacheExpiryPolicy(cacheProperties, new SimpleMeterRegistry());
+    }
+}
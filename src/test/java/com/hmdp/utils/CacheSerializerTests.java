@@ -0,0 +1,125 @@
+package com.hmdp.utils;
+
+import cn.hutool.core.util.StrUtil;
+import com.hmdp.config.CacheProperties;
+import com.hmdp.entity.Shop;
+import lombok.Data;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CacheSerializerTests {
+
+    private final CacheSerializer cacheSerializer = new CacheSerializer(new CacheProperties());
+
+    private final BinaryCacheCodec binaryCodec = new BinaryCacheCodec();
+
+    /**
+     * 字段比Shop少的旧版本结构
+     */
+    @Data
+    public static class ShopV1 {
+        private Long id;
+        private String name;
+    }
+
+    @Test
+    void testBinaryRoundTrip() {
+        Shop shop = shop("102茶餐厅");
+        byte[] bytes = cacheSerializer.serialize(shop);
+        assertEquals(BinaryCacheCodec.MAGIC, bytes[0]);
+        assertEquals(shop, cacheSerializer.deserialize(bytes, Shop.class));
+    }
+
+    @Test
+    void testLogicalRoundTrip() {
+        RedisData redisData = new RedisData();
+        redisData.setExpireTime(LocalDateTime.of(2026, 1, 1, 12, 0, 0));
+        redisData.setDelta(35L);
+        redisData.setData(shop("102茶餐厅"));
+        RedisData decoded = cacheSerializer.deserializeLogical(cacheSerializer.serializeLogical(redisData), Shop.class);
+        assertNotNull(decoded);
+        assertEquals(redisData.getExpireTime(), decoded.getExpireTime());
+        assertEquals(35L, decoded.getDelta());
+        assertEquals(redisData.getData(), decoded.getData());
+    }
+
+    @Test
+    void testCompressedRoundTrip() {
+        Shop shop = shop(StrUtil.repeat("茶餐厅", 1000));
+        byte[] bytes = cacheSerializer.serialize(shop);
+        assertEquals((byte) 0xC7, bytes[0]);
+        assertEquals(shop, cacheSerializer.deserialize(bytes, Shop.class));
+    }
+
+    @Test
+    void testFingerprintMismatchIsMiss() {
+        ShopV1 old = new ShopV1();
+        old.setId(1L);
+        old.setName("102茶餐厅");
+        // 类结构变化后，旧数据按未命中处理
+        assertNull(binaryCodec.decode(binaryCodec.encode(old), Shop.class));
+        byte[] bytes = binaryCodec.encode(shop("102茶餐厅"));
+        bytes[3] ^= 0x01;
+        assertNull(binaryCodec.decode(bytes, Shop.class));
+    }
+
+    @Test
+    void testCorruptLengthIsMiss() {
+        ShopV1 shop = new ShopV1();
+        shop.setId(1L);
+        shop.setName("102茶餐厅");
+        byte[] bytes = binaryCodec.encode(shop);
+        // 头部7字节，id：空值标记1 + 8字节，name：空值标记1 + 长度4字节
+        int lengthOffset = 7 + 1 + 8 + 1;
+        ByteBuffer.wrap(bytes).putInt(lengthOffset, Integer.MAX_VALUE);
+        assertNull(cacheSerializer.deserialize(bytes, ShopV1.class));
+        ByteBuffer.wrap(bytes).putInt(lengthOffset, -1);
+        assertNull(cacheSerializer.deserialize(bytes, ShopV1.class));
+        // 数据截断
+        assertNull(cacheSerializer.deserialize(Arrays.copyOf(bytes, 12), ShopV1.class));
+    }
+
+    @Test
+    void testCorruptCompressedHeaderIsMiss() {
+        byte[] huge = {(byte) 0xC7, 0x7f, (byte) 0xff, (byte) 0xff, (byte) 0xff, 1, 2, 3};
+        assertNull(cacheSerializer.deserialize(huge, Shop.class));
+        byte[] negative = {(byte) 0xC7, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, 1, 2, 3};
+        assertNull(cacheSerializer.deserialize(negative, Shop.class));
+        // 压缩数据截断
+        byte[] bytes = cacheSerializer.serialize(shop(StrUtil.repeat("茶餐厅", 1000)));
+        assertNull(cacheSerializer.deserialize(Arrays.copyOf(bytes, bytes.length / 2), Shop.class));
+        // 头部中的原始长度和实际不一致
+        ByteBuffer.wrap(bytes).putInt(1, ByteBuffer.wrap(bytes).getInt(1) + 1);
+        assertNull(cacheSerializer.deserialize(bytes, Shop.class));
+    }
+
+    @Test
+    void testMalformedJsonIsMiss() {
+        byte[] bytes = "{\"id\":".getBytes(StandardCharsets.UTF_8);
+        assertNull(cacheSerializer.deserialize(bytes, Shop.class));
+        assertNull(cacheSerializer.deserializeList("[{\"id\":".getBytes(StandardCharsets.UTF_8), Shop.class));
+        assertNull(cacheSerializer.deserializeLogical(bytes, Shop.class));
+    }
+
+    private static Shop shop(String name) {
+        return new Shop()
+                .setId(1L)
+                .setName(name)
+                .setTypeId(1L)
+                .setArea("大关")
+                .setX(120.149192)
+                .setY(30.316078)
+                .setAvgPrice(80L)
+                .setSold(4215)
+                .setScore(37)
+                .setVersion(3L)
+                .setCreateTime(LocalDateTime.of(2021, 12, 22, 18, 10, 39, 123456789))
+                .setUpdateTime(LocalDateTime.of(2022, 1, 13, 17, 32, 19));
+    }
+}
@@ -0,0 +1,116 @@
+package com.hmdp.utils;
+
+import com.hmdp.config.CacheProperties;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static com.hmdp.utils.RedisConstants.LOGIN_USER_KEY;
+import static org.junit.jupiter.api.Assertions.*;
+
+class HotKeyDetectorTests {
+
+    private HotKeyDetector detector;
+
+    @AfterEach
+    void tearDown() {
+        if (detector != null) {
+            detector.shutdown();
+        }
+    }
+
+    @Test
+    void testBecomesHotAtThreshold() {
+        detector = detector(10, 100);
+        for (int i = 1; i < 10; i++) {
+            assertFalse(detector.record("cache:shop:1"));
+        }
+        assertTrue(detector.record("cache:shop:1"));
+        assertTrue(detector.isHot("cache:shop:1"));
+        assertFalse(detector.isHot("cache:shop:2"));
+    }
+
+    @Test
+    void testColdKeysStayCold() {
+        detector = detector(10, 100);
+        // 大量低频key，Count-Min Sketch只会高估，默认宽度下不会误判为热点
+        for (int i = 0; i < 1000; i++) {
+            for (int j = 0; j < 5; j++) {
+                assertFalse(detector.record("cache:shop:" + i));
+            }
+        }
+        assertTrue(detector.hotKeys().isEmpty());
+    }
+
+    @Test
+    void testFullHotKeyTableDoesNotReportNewKeys() {
+        detector = detector(10, 2);
+        recordTimes("cache:shop:1", 10);
+        recordTimes("cache:shop:2", 10);
+        // 热点key已满，第三个key不会被跟踪，也不能报告为热点
+        for (int i = 1; i < 10; i++) {
+            detector.record("cache:shop:3");
+        }
+        assertFalse(detector.record("cache:shop:3"));
+        assertFalse(detector.isHot("cache:shop:3"));
+        // 已跟踪的key不受影响
+        assertTrue(detector.record("cache:shop:1"));
+        assertEquals(2, detector.hotKeys().size());
+    }
+
+    @Test
+    void testDecayDemotesWithHysteresis() {
+        detector = detector(10, 100);
+        recordTimes("cache:shop:1", 20);
+        assertTrue(detector.isHot("cache:shop:1"));
+        // 20 -> 10 -> 5，仍不低于阈值的一半
+        detector.decay();
+        detector.decay();
+        assertTrue(detector.isHot("cache:shop:1"));
+        assertEquals(5, detector.hotKeys().get(0).getCount());
+        // 5 -> 2，降级
+        detector.decay();
+        assertFalse(detector.isHot("cache:shop:1"));
+        assertFalse(detector.record("cache:shop:1"));
+    }
+
+    @Test
+    void testHotKeysSortedAndTokensMasked() {
+        detector = detector(10, 100);
+        String token = LOGIN_USER_KEY + "0123456789abcdef";
+        recordTimes(token, 12);
+        recordTimes("cache:shop:1", 30);
+        List<String> keys = detector.hotKeys().stream().map(HotKeyDetector.HotKey::getKey).collect(Collectors.toList());
+        assertEquals("cache:shop:1", keys.get(0));
+        // 登录token只显示前几位
+        assertEquals(LOGIN_USER_KEY + "01234567*", keys.get(1));
+    }
+
+    @Test
+    void testDisabled() {
+        CacheProperties cacheProperties = new CacheProperties();
+        cacheProperties.getHotKey().setEnabled(false);
+        cacheProperties.getHotKey().setThreshold(1);
+        detector = new HotKeyDetector(cacheProperties);
+        assertFalse(detector.record("cache:shop:1"));
+        assertTrue(detector.hotKeys().isEmpty());
+    }
+
+    private void recordTimes(String key, int times) {
+        for (int i = 0; i < times; i++) {
+            detector.record(key);
+        }
+    }
+
+    private static HotKeyDetector detector(int threshold, int maxHotKeys) {
+        CacheProperties cacheProperties = new CacheProperties();
+        CacheProperties.HotKey config = cacheProperties.getHotKey();
+        config.setThreshold(threshold);
+        config.setMaxHotKeys(maxHotKeys);
+        // 测试中手动衰减
+        config.setDecaySeconds(3600);
+        return new HotKeyDetector(cacheProperties);
+    }
+}
@@ -0,0 +1,156 @@
+package com.hmdp.utils;
+
+import com.hmdp.config.CacheProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RedisCircuitBreakerTests {
+
+    private static final long OPEN_MILLIS = 100;
+
+    private CacheProperties cacheProperties;
+
+    @BeforeEach
+    void setUp() {
+        cacheProperties = new CacheProperties();
+        CacheProperties.Breaker config = cacheProperties.getBreaker();
+        config.setWindowSize(10);
+        config.setMinimumCalls(5);
+        config.setFailureRateThreshold(50);
+        config.setSlowCallMillis(50);
+        config.setOpenMillis(OPEN_MILLIS);
+        config.setHalfOpenCalls(2);
+    }
+
+    @Test
+    void testStaysClosedBelowMinimumCalls() {
+        RedisCircuitBreaker breaker = breaker();
+        fail(breaker, 4);
+        assertEquals(RedisCircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+    @Test
+    void testOpensOnFailureRate() {
+        RedisCircuitBreaker breaker = breaker();
+        succeed(breaker, 5);
+        fail(breaker, 4);
+        assertEquals(RedisCircuitBreaker.State.CLOSED, breaker.getState());
+        fail(breaker, 1);
+        assertEquals(RedisCircuitBreaker.State.OPEN, breaker.getState());
+        assertFalse(breaker.isAvailable());
+        // 熔断中不再访问Redis
+        AtomicInteger calls = new AtomicInteger();
+        assertThrows(RedisUnavailableException.class, () -> breaker.call(calls::incrementAndGet));
+        assertEquals("fallback", breaker.execute(() -> "redis", () -> "fallback"));
+        assertEquals(0, calls.get());
+    }
+
+    @Test
+    void testSlowCallsCountAsFailures() {
+        RedisCircuitBreaker breaker = breaker();
+        for (int i = 0; i < 5; i++) {
+            breaker.executeBulk(() -> sleep(60), () -> null);
+        }
+        // 批量调用不按慢调用统计
+        assertEquals(RedisCircuitBreaker.State.CLOSED, breaker.getState());
+        for (int i = 0; i < 5; i++) {
+            breaker.execute(() -> sleep(60), () -> null);
+        }
+        assertEquals(RedisCircuitBreaker.State.OPEN, breaker.getState());
+    }
+
+    @Test
+    void testHalfOpenClosesAfterSuccessfulProbes() throws InterruptedException {
+        RedisCircuitBreaker breaker = breaker();
+        fail(breaker, 5);
+        assertEquals(RedisCircuitBreaker.State.OPEN, breaker.getState());
+        Thread.sleep(OPEN_MILLIS + 20);
+        assertTrue(breaker.isAvailable());
+        succeed(breaker, 1);
+        assertEquals(RedisCircuitBreaker.State.HALF_OPEN, breaker.getState());
+        succeed(breaker, 1);
+        assertEquals(RedisCircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+    @Test
+    void testHalfOpenFailureReopens() throws InterruptedException {
+        RedisCircuitBreaker breaker = breaker();
+        fail(breaker, 5);
+        Thread.sleep(OPEN_MILLIS + 20);
+        fail(breaker, 1);
+        assertEquals(RedisCircuitBreaker.State.OPEN, breaker.getState());
+        assertFalse(breaker.isAvailable());
+    }
+
+    @Test
+    void testHalfOpenRejectsBeyondProbePermits() throws Exception {
+        RedisCircuitBreaker breaker = breaker();
+        fail(breaker, 5);
+        Thread.sleep(OPEN_MILLIS + 20);
+        // 两次试探还没有完成，名额已满
+        CompletableFuture<String> probe1 = new CompletableFuture<>();
+        CompletableFuture<String> probe2 = new CompletableFuture<>();
+        CompletableFuture<String> result1 = breaker.callAsync(() -> probe1);
+        CompletableFuture<String> result2 = breaker.callAsync(() -> probe2);
+        assertFalse(breaker.isAvailable());
+        ExecutionException e = assertThrows(ExecutionException.class,
+                () -> breaker.callAsync(() -> CompletableFuture.completedFuture("redis")).get());
+        assertTrue(e.getCause() instanceof RedisUnavailableException);
+        probe1.complete("ok");
+        probe2.complete("ok");
+        assertEquals("ok", result1.get());
+        assertEquals("ok", result2.get());
+        assertEquals(RedisCircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+    @Test
+    void testResultsOfPreviousStateAreIgnored() throws InterruptedException {
+        RedisCircuitBreaker breaker = breaker();
+        // 熔断前发起的调用
+        CompletableFuture<String> slow = new CompletableFuture<>();
+        breaker.callAsync(() -> slow);
+        fail(breaker, 5);
+        Thread.sleep(OPEN_MILLIS + 20);
+        succeed(breaker, 1);
+        assertEquals(RedisCircuitBreaker.State.HALF_OPEN, breaker.getState());
+        // 旧调用失败不影响半开状态
+        slow.completeExceptionally(new IllegalStateException("timeout"));
+        assertEquals(RedisCircuitBreaker.State.HALF_OPEN, breaker.getState());
+        succeed(breaker, 1);
+        assertEquals(RedisCircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+    private RedisCircuitBreaker breaker() {
+        return new RedisCircuitBreaker(cacheProperties, new SimpleMeterRegistry());
+    }
+
+    private static void succeed(RedisCircuitBreaker breaker, int times) {
+        for (int i = 0; i < times; i++) {
+            breaker.execute(() -> "ok", () -> "fallback");
+        }
+    }
+
+    private static void fail(RedisCircuitBreaker breaker, int times) {
+        for (int i = 0; i < times; i++) {
+            breaker.execute(() -> {
+                throw new IllegalStateException("Redis连接失败");
+            }, () -> "fallback");
+        }
+    }
+
+    private static Object sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return null;
+    }
+}
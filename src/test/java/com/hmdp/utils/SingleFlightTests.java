@@ -0,0 +1,97 @@
+package com.hmdp.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SingleFlightTests {
+
+    private final SingleFlight singleFlight = new SingleFlight();
+
+    @Test
+    void testConcurrentCallsShareOneLoad() throws Exception {
+        int threads = 8;
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService es = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<String>> futures = new ArrayList<>();
+            futures.add(es.submit(() -> singleFlight.execute("shop:1", () -> {
+                loads.incrementAndGet();
+                entered.countDown();
+                await(release);
+                return "shop";
+            })));
+            // 第一个调用开始加载后再发起其余调用
+            assertTrue(entered.await(5, TimeUnit.SECONDS));
+            for (int i = 1; i < threads; i++) {
+                futures.add(es.submit(() -> singleFlight.execute("shop:1", () -> {
+                    loads.incrementAndGet();
+                    return "other";
+                })));
+            }
+            Thread.sleep(100);
+            release.countDown();
+            for (Future<String> future : futures) {
+                assertEquals("shop", future.get(5, TimeUnit.SECONDS));
+            }
+            assertEquals(1, loads.get());
+        } finally {
+            es.shutdownNow();
+        }
+    }
+
+    @Test
+    void testFailureIsSharedAndNotCached() throws Exception {
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService es = Executors.newFixedThreadPool(2);
+        try {
+            Future<String> first = es.submit(() -> singleFlight.execute("shop:1", () -> {
+                entered.countDown();
+                await(release);
+                throw new IllegalStateException("数据库不可用");
+            }));
+            assertTrue(entered.await(5, TimeUnit.SECONDS));
+            Future<String> second = es.submit(() -> singleFlight.execute("shop:1", () -> "other"));
+            Thread.sleep(100);
+            release.countDown();
+            for (Future<String> future : Arrays.asList(first, second)) {
+                Exception e = assertThrows(Exception.class, () -> future.get(5, TimeUnit.SECONDS));
+                assertTrue(e.getCause() instanceof IllegalStateException);
+            }
+        } finally {
+            es.shutdownNow();
+        }
+        // 失败的结果不保留，下一次调用重新加载
+        assertEquals("shop", singleFlight.execute("shop:1", () -> "shop"));
+    }
+
+    @Test
+    void testDifferentKeysLoadIndependently() {
+        AtomicInteger loads = new AtomicInteger();
+        assertEquals(1, (int) singleFlight.execute("shop:1", loads::incrementAndGet));
+        assertEquals(2, (int) singleFlight.execute("shop:2", loads::incrementAndGet));
+        // 上一次调用已经完成，同一个key再次调用会重新加载
+        assertEquals(3, (int) singleFlight.execute("shop:1", loads::incrementAndGet));
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
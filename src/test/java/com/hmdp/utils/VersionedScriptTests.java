@@ -0,0 +1,181 @@
+package com.hmdp.utils;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.testcontainers.containers.GenericContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.utility.DockerImageName;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static com.hmdp.utils.RedisConstants.CACHE_VERSION_SUFFIX;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 带版本号写缓存的Lua脚本，在真实的Redis中执行，没有Docker时跳过
+ */
+@Testcontainers(disabledWithoutDocker = true)
+class VersionedScriptTests {
+
+    private static final String KEY = "cache:shop:1";
+
+    private static final List<String> KEYS = Arrays.asList(KEY, KEY + CACHE_VERSION_SUFFIX);
+
+    @Container
+    private static final GenericContainer<?> REDIS =
+            new GenericContainer<>(DockerImageName.parse("redis:6.2-alpine")).withExposedPorts(6379);
+
+    private static LettuceConnectionFactory connectionFactory;
+
+    private static StringRedisTemplate stringRedisTemplate;
+
+    @BeforeAll
+    static void setUpRedis() {
+        connectionFactory = new LettuceConnectionFactory(REDIS.getHost(), REDIS.getMappedPort(6379));
+        connectionFactory.afterPropertiesSet();
+        stringRedisTemplate = new StringRedisTemplate(connectionFactory);
+    }
+
+    @AfterAll
+    static void tearDownRedis() {
+        connectionFactory.destroy();
+    }
+
+    @BeforeEach
+    void flush() {
+        stringRedisTemplate.execute((RedisCallback<Object>) connection -> {
+            connection.flushAll();
+            return null;
+        });
+    }
+
+    @Test
+    void testVersionedSetRejectsOlderAndSameVersion() {
+        assertEquals(1L, set(2, "v2", 60));
+        assertEquals(0L, set(1, "v1", 60));
+        assertEquals(0L, set(2, "v2-again", 60));
+        assertEquals("v2", value());
+        assertEquals(1L, set(3, "v3", 60));
+        assertEquals("v3", value());
+        assertEquals("3", version());
+    }
+
+    @Test
+    void testVersionedSetExpiresValueAndVersionTogether() {
+        set(1, "v1", 60);
+        assertTrue(stringRedisTemplate.getExpire(KEY) > 0);
+        assertTrue(stringRedisTemplate.getExpire(KEY + CACHE_VERSION_SUFFIX) > 0);
+        // 有效期小于等于0表示不过期
+        set(2, "v2", 0);
+        assertEquals(-1L, stringRedisTemplate.getExpire(KEY));
+        assertEquals(-1L, stringRedisTemplate.getExpire(KEY + CACHE_VERSION_SUFFIX));
+    }
+
+    @Test
+    void testEvictBlocksStaleRebuild() {
+        set(1, "v1", 60);
+        // 数据库更新到版本3后删除缓存
+        assertEquals(1L, evict(3));
+        assertNull(value());
+        assertEquals("2", version());
+        // 更新前读到版本2的重建被拒绝，版本3可以写入
+        assertEquals(0L, set(2, "v2", 60));
+        assertEquals(1L, set(3, "v3", 60));
+        assertEquals("v3", value());
+    }
+
+    @Test
+    void testEvictNeverLowersVersion() {
+        set(5, "v5", 60);
+        // 乱序到达的旧删除：仍然删除缓存，但不降低版本标记
+        evict(3);
+        assertNull(value());
+        assertEquals("5", version());
+        assertEquals(0L, set(4, "v4", 60));
+    }
+
+    @Test
+    void testHashVersionedSetReplacesWholeHash() {
+        assertEquals(1L, hashSet("2", "name", "102茶餐厅", "area", "大关"));
+        assertEquals(0L, hashSet("1", "name", "旧名称"));
+        assertEquals("102茶餐厅", stringRedisTemplate.opsForHash().get(KEY, "name"));
+        // 整体替换，不残留旧字段
+        assertEquals(1L, hashSet("3", "name", "新名称"));
+        assertEquals("新名称", stringRedisTemplate.opsForHash().get(KEY, "name"));
+        assertFalse(stringRedisTemplate.opsForHash().hasKey(KEY, "area"));
+        assertTrue(stringRedisTemplate.getExpire(KEY) > 0);
+        // 没有版本号时直接写入
+        assertEquals(1L, hashSet("", "name", "无版本"));
+        assertEquals("无版本", stringRedisTemplate.opsForHash().get(KEY, "name"));
+    }
+
+    @Test
+    void testHashPatchDropsOutOfOrderUpdates() {
+        hashSet("2", "name", "102茶餐厅", "sold", "10");
+        assertEquals(1L, hashPatch("3", "sold", "11"));
+        assertEquals("11", stringRedisTemplate.opsForHash().get(KEY, "sold"));
+        assertEquals("102茶餐厅", stringRedisTemplate.opsForHash().get(KEY, "name"));
+        // 比当前版本旧的更新丢弃
+        assertEquals(0L, hashPatch("2", "sold", "9"));
+        assertEquals("11", stringRedisTemplate.opsForHash().get(KEY, "sold"));
+    }
+
+    @Test
+    void testHashPatchOnMissingHashLeavesMarker() {
+        assertEquals(0L, hashPatch("5", "sold", "11"));
+        assertFalse(stringRedisTemplate.hasKey(KEY));
+        assertEquals("4", version());
+        // 更新前读到的旧数据不能再重建
+        assertEquals(0L, hashSet("4", "name", "旧数据"));
+        assertEquals(1L, hashSet("5", "name", "新数据"));
+    }
+
+    private Long set(long version, String value, long ttlSeconds) {
+        return stringRedisTemplate.execute(script("versioned_set.lua"), KEYS,
+                String.valueOf(version), value, String.valueOf(ttlSeconds));
+    }
+
+    private Long evict(long version) {
+        return stringRedisTemplate.execute(script("versioned_evict.lua"), KEYS, String.valueOf(version), "60");
+    }
+
+    private Long hashSet(String version, String... fields) {
+        return stringRedisTemplate.execute(script("hash_versioned_set.lua"), KEYS, args(version, fields));
+    }
+
+    private Long hashPatch(String version, String... fields) {
+        return stringRedisTemplate.execute(script("hash_patch.lua"), KEYS, args(version, fields));
+    }
+
+    private String value() {
+        return stringRedisTemplate.opsForValue().get(KEY);
+    }
+
+    private String version() {
+        return stringRedisTemplate.opsForValue().get(KEY + CACHE_VERSION_SUFFIX);
+    }
+
+    private static Object[] args(String version, String... fields) {
+        Object[] args = new Object[fields.length + 2];
+        args[0] = version;
+        args[1] = "60";
+        System.arraycopy(fields, 0, args, 2, fields.length);
+        return args;
+    }
+
+    private static DefaultRedisScript<Long> script(String location) {
+        DefaultRedisScript<Long> script = new DefaultRedisScript<>();
+        script.setLocation(new ClassPathResource(location));
+        script.setResultType(Long.class);
+        return script;
+    }
+}